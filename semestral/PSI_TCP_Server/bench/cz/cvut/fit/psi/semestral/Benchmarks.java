@@ -0,0 +1,341 @@
+package cz.cvut.fit.psi.semestral;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of protocol hot paths, time is reported in ns/op, allocation by GC profiler as gc.alloc.rate.norm.
+ * Results serve as baseline against which performance changes are judged, run with the same JVM and machine.
+ * <p>
+ * Build and run from project directory:
+ * mvn -Pjmh package
+ * java -jar target/benchmarks.jar -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = "-Dlog.level=WARN")
+@State(Scope.Thread)
+public class Benchmarks {
+    /* Channel that accepts everything, used instead of client socket */
+    private static final WritableByteChannel DISCARD = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int written = src.remaining();
+            src.position(src.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final FrameDecoder decoder = new FrameDecoder(MessageType.SECRET.getMaxLength());
+    private final OutputBuffer output = new OutputBuffer(1024);
+
+    /* Framing */
+    private final ByteBuffer position = ascii("OK -3 12\u0007\b");
+    private final ByteBuffer secret = ascii("Tohle je maly krok pro robota, ale velky krok pro studentstvo!\u0007\b");
+    //Same message split into three segments, as client may send it
+    private final ByteBuffer[] segments = {ascii("OK -"), ascii("3 1"), ascii("2\u0007\b")};
+
+    /* Parsing */
+    private final byte[] frame = "OK -3 12".getBytes(StandardCharsets.US_ASCII);
+    private final String message = "OK -3 12";
+
+    /* Authentication and sessions */
+    private final ByteBuffer name = ascii("Oompa Loompa\u0007\b");
+    private final ByteBuffer key = ascii("0\u0007\b");
+    private final ByteBuffer confirmation = ascii("8389\u0007\b");
+    private final ByteBuffer login = ascii("Oompa Loompa\u0007\b0\u0007\b8389\u0007\b");
+    private final ByteBuffer recharging = ascii("RECHARGING\u0007\bFULL POWER\u0007\b");
+    private final ByteBuffer longName = ascii("This name is longer than twenty characters\u0007\b");
+    private final ByteBuffer wrongConfirmation = ascii("Oompa Loompa\u0007\b0\u0007\b8390\u0007\b");
+    //Logged in session for recharging
+    private Session session;
+
+    /* Obstacle cache filled by many robots, queried for area of one route */
+    private final ObstacleCache cache = new ObstacleCache(4096, Long.MAX_VALUE);
+    private final long[] cached = new long[256];
+
+    /**
+     * Sessions recorded by Capture, started only in the forked JVM of the benchmark using it
+     */
+    @State(Scope.Thread)
+    public static class Captured {
+        private int capture;
+        private OutputBuffer output;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Capture.start(Path.of("target", "benchmarks.capture"));
+            capture = Capture.open();
+            output = new OutputBuffer(1024, capture);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Capture.flush();
+            if (Capture.getDropped() > 0) {
+                System.out.printf("Capture dropped %d records%n", Capture.getDropped());
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        session = loggedIn();
+        Random random = new Random(1);
+        for (int i = 0; i < 3000; i++) {
+            cache.add(MessageParser.pack(random.nextInt(1001) - 500, random.nextInt(1001) - 500), 1);
+        }
+    }
+
+    /**
+     * Decoding of client messages - what Session does with every received segment
+     */
+    @Benchmark
+    public int framingPosition() throws Exception {
+        decoder.expect(MessageType.OK.getMaxLength());
+        position.rewind();
+        decoder.decode(position);
+        return decoder.getLength();
+    }
+
+    @Benchmark
+    public int framingSecret() throws Exception {
+        decoder.expect(MessageType.SECRET.getMaxLength());
+        secret.rewind();
+        decoder.decode(secret);
+        return decoder.getLength();
+    }
+
+    @Benchmark
+    public void framingSegmented(Blackhole blackhole) throws Exception {
+        decoder.expect(MessageType.OK.getMaxLength());
+        for (ByteBuffer segment : segments) {
+            segment.rewind();
+            blackhole.consume(decoder.decode(segment));
+        }
+    }
+
+    /**
+     * Parsing of "OK x y" received after every move, original regular expression is kept for comparison
+     */
+    @Benchmark
+    public long parsePosition() throws Exception {
+        return MessageParser.parsePosition(frame, frame.length);
+    }
+
+    @Benchmark
+    public int parsePositionRegex() {
+        if (!message.matches("^OK -?[0-9]+ -?[0-9]+$")) {
+            return 0;
+        }
+        String[] msg = message.split(" ");
+        return Integer.parseInt(msg[1]) + Integer.parseInt(msg[2]);
+    }
+
+    /**
+     * Whole login of robot - name decoding with hash, key ID, server hash and client confirmation
+     */
+    @Benchmark
+    public int authentication() throws Exception {
+        Authenticator authenticator = new Authenticator();
+        name.rewind();
+        key.rewind();
+        confirmation.rewind();
+
+        decoder.expect(MessageType.NAME.getMaxLength());
+        decoder.decode(name);
+        authenticator.setName(decoder.getSum());
+        output.put(Response.KEY_REQUEST);
+
+        decoder.expect(MessageType.KEY.getMaxLength());
+        decoder.decode(key);
+        authenticator.setKeyId(MessageParser.parseNumber(decoder.getFrame(), decoder.getLength()));
+        authenticator.writeServerHash(output);
+
+        decoder.expect(MessageType.CONFIRMATION.getMaxLength());
+        decoder.decode(confirmation);
+        authenticator.verify(MessageParser.parseNumber(decoder.getFrame(), decoder.getLength()));
+        output.put(Response.OK);
+        output.flush(DISCARD);
+        return authenticator.getClientHash();
+    }
+
+    @Benchmark
+    public long outputMove() throws IOException {
+        output.put(Response.MOVE);
+        output.flush(DISCARD);
+        return output.getFlushes();
+    }
+
+    /**
+     * Planning of robot moves - whole route to [0,0] on empty field, same loop as Session navigating robot
+     */
+    @Benchmark
+    public long navigationRouteSimple() {
+        return navigate("simple", -8, 7, Direction.DOWN);
+    }
+
+    @Benchmark
+    public long navigationRouteShortest() {
+        return navigate("shortest", -8, 7, Direction.DOWN);
+    }
+
+    /**
+     * Robot far from [0,0], navigated by SimpleNavigation until the searched area is small enough
+     */
+    @Benchmark
+    public long navigationRouteShortestFar() {
+        return navigate("shortest", 999, 999, Direction.DOWN);
+    }
+
+    /**
+     * Cached obstacles of area searched by ShortestPathNavigation for robot at [-8,7], as done on every replan
+     */
+    @Benchmark
+    public int obstacleCacheCollect() {
+        return cache.collect(-10, 2, -2, 9, 2, cached);
+    }
+
+    /**
+     * Login driven through Session state machine in one segment, compared with "authentication" it shows
+     * the overhead of session dispatch
+     */
+    @Benchmark
+    public Session.State sessionLogin() throws IOException {
+        Session session = new Session(output);
+        login.rewind();
+        session.onInput(login);
+        output.flush(DISCARD);
+        return session.getState();
+    }
+
+    /**
+     * RECHARGING/FULL POWER round trip on already logged in session. Session ends after Constants.MAX_RECHARGES
+     * cycles, new one is logged in then, which is included in the result
+     */
+    @Benchmark
+    public Session.State sessionRecharging() throws IOException {
+        if (session.isFinished()) {
+            session = loggedIn();
+        }
+        recharging.rewind();
+        session.onInput(recharging);
+        return session.getState();
+    }
+
+    /**
+     * Sessions of misbehaving clients - name longer than allowed and wrong confirmation after whole login
+     */
+    @Benchmark
+    public boolean sessionRejectSyntax() throws IOException {
+        Session session = new Session(output);
+        longName.rewind();
+        session.onInput(longName);
+        output.flush(DISCARD);
+        return session.isFinished();
+    }
+
+    @Benchmark
+    public boolean sessionRejectLogin() throws IOException {
+        Session session = new Session(output);
+        wrongConfirmation.rewind();
+        session.onInput(wrongConfirmation);
+        output.flush(DISCARD);
+        return session.isFinished();
+    }
+
+    /**
+     * Same login as sessionLogin with every chunk recorded the way connection drivers do,
+     * difference of the two is the cost of capture on session thread
+     */
+    @Benchmark
+    public Session.State sessionLoginCaptured(Captured captured) throws IOException {
+        Session session = new Session(captured.output);
+        Capture.inbound(captured.capture, login.array(), 0, login.capacity());
+        login.rewind();
+        session.onInput(login);
+        captured.output.flush(DISCARD);
+        Capture.event(captured.capture, Capture.CLOSE);
+        return session.getState();
+    }
+
+    private Session loggedIn() throws IOException {
+        Session session = new Session(output);
+        login.rewind();
+        session.onInput(login);
+        output.flush(DISCARD);
+        return session;
+    }
+
+    /**
+     * Simulates robot on field without obstacles
+     *
+     * @return number of commands sent to robot
+     */
+    private static long navigate(String strategy, int x, int y, Direction direction) {
+        Robot robot = new Robot("benchmark", NavigationStrategy.create(strategy));
+        long commands = 0;
+
+        for (int i = 0; i < 2; i++) {
+            x += dx(direction);
+            y += dy(direction);
+            robot.setPosition(x, y);
+            commands++;
+        }
+        robot.findDirection();
+
+        while (true) {
+            Queue<Movement> steps = robot.getMoves();
+            while (!steps.isEmpty()) {
+                Movement movement = steps.remove();
+                if (movement == Movement.PICK_UP) {
+                    return commands;
+                }
+                commands++;
+                if (movement == Movement.MOVE) {
+                    x += dx(direction);
+                    y += dy(direction);
+                    robot.setPosition(x, y);
+                    if (robot.isAtStartingCoordinates()) {
+                        return commands;
+                    }
+                } else {
+                    robot.changeDirection(movement);
+                    direction = robot.getDirection();
+                }
+            }
+        }
+    }
+
+    private static int dx(Direction direction) {
+        return direction == Direction.RIGHT ? 1 : direction == Direction.LEFT ? -1 : 0;
+    }
+
+    private static int dy(Direction direction) {
+        return direction == Direction.UP ? 1 : direction == Direction.DOWN ? -1 : 0;
+    }
+
+    private static ByteBuffer ascii(String message) {
+        return ByteBuffer.wrap(message.getBytes(StandardCharsets.US_ASCII));
+    }
+}
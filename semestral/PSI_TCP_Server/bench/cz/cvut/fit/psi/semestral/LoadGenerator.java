@@ -0,0 +1,193 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Load generator - runs given number of simulated robots concurrently against running server,
+ * each robot starts a new session as soon as the previous one ends. Reports sessions per second,
+ * latency percentiles of every protocol phase and how sessions ended.
+ * <p>
+ * Build and run from project directory, with server already running:
+ * mvn -Pjmh package
+ * java -cp target/benchmarks.jar cz.cvut.fit.psi.semestral.LoadGenerator --clients=1000 --duration=30
+ * <p>
+ * Options (default): --host (127.0.0.1), --port (65432), --clients (100), --duration in s (10),
+ * --obstacles per field (10), --errors - share of sessions with deliberate mistake (0.05),
+ * --recharging - chance of recharging before a reply (0.01), --recharging-time in ms (100),
+ * --timeout - client read timeout in ms (10000), --seed (1),
+ * --name of robots, "%d" is replaced by robot number ("Robot %d"), --key ID (random),
+ * --start position "x,y" (random), --field - obstacles and start are in [-field,field] square (17)
+ */
+public class LoadGenerator {
+    static class Settings {
+        String host = Constants.HOST;
+        int port = Constants.PORT;
+        int clients = 100;
+        int duration = 10;
+        int obstacles = 10;
+        double errorRate = 0.05;
+        double rechargingRate = 0.01;
+        int rechargingTime = 100;
+        int clientTimeout = 10_000;
+        long seed = 1;
+        String name = "Robot %d";
+        //Values below are random for every robot when not given
+        Integer keyId = null;
+        Integer startX = null;
+        Integer startY = null;
+        int field = 17;
+
+        static Settings parse(String[] args) {
+            Settings settings = new Settings();
+            for (String arg : args) {
+                String[] option = arg.split("=", 2);
+                if (option.length != 2 || !option[0].startsWith("--")) {
+                    throw new IllegalArgumentException("Expected --option=value, got: " + arg);
+                }
+                String value = option[1];
+                switch (option[0].substring(2)) {
+                    case "host" -> settings.host = value;
+                    case "port" -> settings.port = Integer.parseInt(value);
+                    case "clients" -> settings.clients = Integer.parseInt(value);
+                    case "duration" -> settings.duration = Integer.parseInt(value);
+                    case "obstacles" -> settings.obstacles = Integer.parseInt(value);
+                    case "errors" -> settings.errorRate = Double.parseDouble(value);
+                    case "recharging" -> settings.rechargingRate = Double.parseDouble(value);
+                    case "recharging-time" -> settings.rechargingTime = Integer.parseInt(value);
+                    case "timeout" -> settings.clientTimeout = Integer.parseInt(value);
+                    case "seed" -> settings.seed = Long.parseLong(value);
+                    case "name" -> settings.name = value;
+                    case "key" -> settings.keyId = parseKey(value);
+                    case "start" -> {
+                        String[] position = value.split(",");
+                        if (position.length != 2) {
+                            throw new IllegalArgumentException("Expected --start=x,y, got: " + arg);
+                        }
+                        settings.startX = Integer.parseInt(position[0].trim());
+                        settings.startY = Integer.parseInt(position[1].trim());
+                    }
+                    case "field" -> settings.field = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            return settings;
+        }
+
+        private static int parseKey(String value) {
+            int key = Integer.parseInt(value);
+            if (key < 0 || key >= Constants.KEYS.length) {
+                throw new IllegalArgumentException("Key ID must be from 0 to " + (Constants.KEYS.length - 1));
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Results of one worker thread, merged once all workers finish
+     */
+    static class Recorder {
+        private final long[][] latencies = new long[SimulatedRobot.Phase.values().length][];
+        private final int[] counts = new int[SimulatedRobot.Phase.values().length];
+        private final long[] outcomes = new long[SimulatedRobot.Outcome.values().length];
+        private long unexpected = 0;
+
+        Recorder() {
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new long[1024];
+            }
+        }
+
+        void record(SimulatedRobot.Phase phase, long nanos) {
+            int i = phase.ordinal();
+            if (counts[i] == latencies[i].length) {
+                latencies[i] = Arrays.copyOf(latencies[i], counts[i] * 2);
+            }
+            latencies[i][counts[i]++] = nanos;
+        }
+
+        void merge(Recorder other) {
+            for (int i = 0; i < latencies.length; i++) {
+                for (int j = 0; j < other.counts[i]; j++) {
+                    record(SimulatedRobot.Phase.values()[i], other.latencies[i][j]);
+                }
+            }
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] += other.outcomes[i];
+            }
+            unexpected += other.unexpected;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Settings settings = Settings.parse(args);
+        System.out.printf("Running %d clients against %s:%d for %d s%n",
+                settings.clients, settings.host, settings.port, settings.duration);
+
+        long end = System.nanoTime() + settings.duration * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        List<Recorder> recorders = new ArrayList<>();
+        for (int i = 0; i < settings.clients; i++) {
+            Recorder recorder = new Recorder();
+            Random random = new Random(settings.seed * 31 + i);
+            int worker = i;
+            Thread thread = new Thread(() -> {
+                int session = 0;
+                while (System.nanoTime() < end) {
+                    SimulatedRobot robot = new SimulatedRobot(settings, random, worker * 100_000 + session++);
+                    SimulatedRobot.Outcome outcome = robot.run(recorder);
+                    recorder.outcomes[outcome.ordinal()]++;
+                    if (!robot.isExpected(outcome)) {
+                        recorder.unexpected++;
+                    }
+                }
+            }, "client-" + i);
+            workers.add(thread);
+            recorders.add(recorder);
+            thread.start();
+        }
+
+        long start = System.nanoTime();
+        Recorder total = new Recorder();
+        for (int i = 0; i < workers.size(); i++) {
+            workers.get(i).join();
+            total.merge(recorders.get(i));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        report(total, seconds);
+    }
+
+    private static void report(Recorder total, double seconds) {
+        long sessions = Arrays.stream(total.outcomes).sum();
+        System.out.printf("%nSessions: %d in %.1f s, %.1f sessions/s%n", sessions, seconds, sessions / seconds);
+        System.out.printf("Sessions that ended differently than expected: %d%n", total.unexpected);
+
+        System.out.printf("%nOutcome%n");
+        for (SimulatedRobot.Outcome outcome : SimulatedRobot.Outcome.values()) {
+            System.out.printf("  %-20s %10d%n", outcome, total.outcomes[outcome.ordinal()]);
+        }
+
+        System.out.printf("%n%-12s %10s %10s %10s %10s %10s%n", "Phase [ms]", "count", "p50", "p99", "p999", "max");
+        for (SimulatedRobot.Phase phase : SimulatedRobot.Phase.values()) {
+            int count = total.counts[phase.ordinal()];
+            long[] latencies = Arrays.copyOf(total.latencies[phase.ordinal()], count);
+            Arrays.sort(latencies);
+            System.out.printf("%-12s %10d %10.3f %10.3f %10.3f %10.3f%n", phase, count,
+                    percentile(latencies, 0.5), percentile(latencies, 0.99),
+                    percentile(latencies, 0.999), percentile(latencies, 1.0));
+        }
+    }
+
+    /**
+     * @return percentile of sorted latencies in ms
+     */
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,173 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Compares navigation strategies on the same random obstacle maps - counts commands (round trips) sent to robot
+ * until it picks up the secret, and sessions ended by collision limit. Second comparison runs all robots
+ * on one field, with and without ObstacleCache shared between them.
+ * <p>
+ * Build and run from project directory:
+ * mvn -Pjmh package
+ * java -cp target/benchmarks.jar cz.cvut.fit.psi.semestral.NavigationComparison [maps] [obstacles per map]
+ */
+public class NavigationComparison {
+    /* Robot starts and obstacles are placed in this square around [0,0] */
+    private static final int FIELD_SIZE = 17;
+    /* Same limit as server sessions */
+    private static final int MAX_COLLISIONS = 20;
+    /* Simulation gives up after this many commands, route is considered not found */
+    private static final int MAX_COMMANDS = 10_000;
+    private static final String[] STRATEGIES = {"simple", "shortest"};
+
+    /**
+     * Random field with obstacles, robot start position and direction
+     */
+    record Field(Set<Long> obstacles, int x, int y, Direction direction) {
+        static Field random(Random random, int obstacleCount) {
+            Set<Long> obstacles = new HashSet<>();
+            for (int i = 0; i < obstacleCount; i++) {
+                int obstacleX = random.nextInt(2 * FIELD_SIZE + 1) - FIELD_SIZE;
+                int obstacleY = random.nextInt(2 * FIELD_SIZE + 1) - FIELD_SIZE;
+                if (obstacleX != 0 || obstacleY != 0) {
+                    obstacles.add(MessageParser.pack(obstacleX, obstacleY));
+                }
+            }
+            return withStart(random, obstacles);
+        }
+
+        /**
+         * @return field with given obstacles and random start, which is not on an obstacle
+         */
+        static Field withStart(Random random, Set<Long> obstacles) {
+            int x;
+            int y;
+            do {
+                x = random.nextInt(2 * FIELD_SIZE + 1) - FIELD_SIZE;
+                y = random.nextInt(2 * FIELD_SIZE + 1) - FIELD_SIZE;
+            } while ((x == 0 && y == 0) || obstacles.contains(MessageParser.pack(x, y)));
+            return new Field(obstacles, x, y, Direction.values()[random.nextInt(4)]);
+        }
+    }
+
+    public static void main(String[] args) {
+        int maps = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int obstacles = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        Field[] fields = new Field[maps];
+        Random random = new Random(1);
+        for (int i = 0; i < maps; i++) {
+            fields[i] = Field.random(random, obstacles);
+        }
+
+        System.out.printf("%d maps with %d obstacles in [-%d,%d]%n%n", maps, obstacles, FIELD_SIZE, FIELD_SIZE);
+        printHeader();
+        for (String strategy : STRATEGIES) {
+            compare(strategy, fields, () -> NavigationStrategy.create(strategy));
+        }
+        //Cache is harmful when every robot has a different field, as with tester
+        ObstacleCache misleading = new ObstacleCache(4096, Long.MAX_VALUE);
+        compare("cached", fields, () -> new ShortestPathNavigation(misleading));
+
+        //All robots on the same field, later robots may use obstacles found by earlier ones
+        Set<Long> shared = Field.random(random, obstacles).obstacles();
+        for (int i = 0; i < maps; i++) {
+            fields[i] = Field.withStart(random, shared);
+        }
+        System.out.printf("%n%d robots on one field with %d obstacles%n%n", maps, shared.size());
+        printHeader();
+        compare("shortest", fields, ShortestPathNavigation::new);
+        ObstacleCache cache = new ObstacleCache(4096, Long.MAX_VALUE);
+        compare("cached", fields, () -> new ShortestPathNavigation(cache));
+    }
+
+    private static void printHeader() {
+        System.out.printf("%-10s %10s %10s %10s %10s %12s %10s%n",
+                "Strategy", "mean", "p50", "p99", "max", "collisions", "logouts");
+    }
+
+    private static void compare(String name, Field[] fields, Supplier<NavigationStrategy> strategy) {
+        int maps = fields.length;
+        int[] commands = new int[maps];
+        long collisions = 0;
+        int logouts = 0;
+        for (int i = 0; i < maps; i++) {
+            Robot robot = new Robot("comparison", strategy.get());
+            commands[i] = navigate(robot, fields[i]);
+            collisions += robot.getCollisions();
+            if (commands[i] < 0) {
+                logouts++;
+                commands[i] = MAX_COMMANDS;
+            }
+        }
+        Arrays.sort(commands);
+        System.out.printf("%-10s %10.1f %10d %10d %10d %12.2f %10d%n", name,
+                Arrays.stream(commands).average().orElse(0), commands[maps / 2],
+                commands[(int) (maps * 0.99)], commands[maps - 1], (double) collisions / maps, logouts);
+    }
+
+    /**
+     * Drives robot the same way as Handler.moveToTreasure, robot moves on given field
+     *
+     * @return number of commands sent to robot until it reached [0,0], -1 if session would be ended
+     */
+    static int navigate(Robot robot, Field field) {
+        int x = field.x();
+        int y = field.y();
+        Direction direction = field.direction();
+        int commands = 0;
+
+        for (int i = 0; i < 2; i++) {
+            commands++;
+            if (!field.obstacles().contains(MessageParser.pack(x + dx(direction), y + dy(direction)))) {
+                x += dx(direction);
+                y += dy(direction);
+            }
+            robot.setPosition(x, y);
+        }
+        robot.findDirection();
+
+        while (commands < MAX_COMMANDS) {
+            if (robot.getCollisions() >= MAX_COLLISIONS) {
+                return -1;
+            }
+            Queue<Movement> steps = robot.getMoves();
+            while (!steps.isEmpty()) {
+                Movement movement = steps.remove();
+                if (movement == Movement.PICK_UP) {
+                    return commands;
+                }
+                commands++;
+                if (movement == Movement.MOVE) {
+                    if (!field.obstacles().contains(MessageParser.pack(x + dx(direction), y + dy(direction)))) {
+                        x += dx(direction);
+                        y += dy(direction);
+                    }
+                    robot.setPosition(x, y);
+                    if (robot.isAtStartingCoordinates()) {
+                        return commands;
+                    }
+                } else {
+                    robot.changeDirection(movement);
+                    direction = RotationPlanner.turn(direction, movement);
+                }
+                if (robot.getDirection() == Direction.UNDEFINED) {
+                    robot.findDirection();
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int dx(Direction direction) {
+        return direction == Direction.RIGHT ? 1 : direction == Direction.LEFT ? -1 : 0;
+    }
+
+    private static int dy(Direction direction) {
+        return direction == Direction.UP ? 1 : direction == Direction.DOWN ? -1 : 0;
+    }
+}
@@ -0,0 +1,164 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays sessions captured by server started with "--capture.file=file" - received bytes and session events
+ * are fed into Session in the recorded order, without any sockets. Output of every session is compared
+ * with what the server sent, so the same capture checks both performance and behaviour of a change.
+ * <p>
+ * Build and run from project directory:
+ * mvn -Pjmh package
+ * java -cp target/benchmarks.jar cz.cvut.fit.psi.semestral.Replay --file=capture.bin --speed=max
+ * <p>
+ * Options (default): --file - capture to replay, --speed - "max" replays as fast as possible,
+ * "original" keeps recorded time between records (max), --repeat - how many times capture is replayed (1)
+ * Configuration of sessions is taken from system properties, e.g. -Dnavigation=shortest, as the captured server had.
+ */
+public class Replay {
+    /**
+     * Captured connection being replayed
+     */
+    private static class Replayed {
+        private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        private final WritableByteChannel channel = Channels.newChannel(sent);
+        private final OutputBuffer output = new OutputBuffer(Config.get().outputBuffer);
+        private final Session session = new Session(output);
+    }
+
+    private static long sessions = 0;
+    private static long records = 0;
+    private static long mismatched = 0;
+    private static long incomplete = 0;
+
+    public static void main(String[] args) throws IOException {
+        Path file = null;
+        boolean original = false;
+        int repeat = 1;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !option[0].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option=value, got: " + arg);
+            }
+            switch (option[0].substring(2)) {
+                case "file" -> file = Path.of(option[1]);
+                case "speed" -> original = switch (option[1]) {
+                    case "max" -> false;
+                    case "original" -> true;
+                    default -> throw new IllegalArgumentException("Unknown speed: " + option[1]);
+                };
+                case "repeat" -> repeat = Integer.parseInt(option[1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("Capture is not given, use --file=capture");
+        }
+        Config.load(List.of());
+
+        MappedByteBuffer capture;
+        try (FileChannel channel = FileChannel.open(file)) {
+            capture = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (capture.limit() < Capture.FILE_HEADER || capture.getInt(0) != Capture.MAGIC) {
+            throw new IOException("Not a capture file: " + file);
+        }
+        if (capture.getInt(4) != Capture.VERSION) {
+            throw new IOException("Unsupported capture version " + capture.getInt(4));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            replay(capture, original);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Sessions: %d in %.3f s, %.1f sessions/s%n", sessions, seconds, sessions / seconds);
+        System.out.printf("Records: %d, %.1f records/s%n", records, records / seconds);
+        System.out.printf("Sessions with different output than captured: %d%n", mismatched);
+        System.out.printf("Sessions not captured completely: %d%n", incomplete);
+        Log.flush();
+    }
+
+    /**
+     * Replays every record of capture once
+     *
+     * @param original true to wait for recorded time of every record
+     */
+    private static void replay(ByteBuffer capture, boolean original) throws IOException {
+        Map<Integer, Replayed> replayed = new HashMap<>();
+        long start = System.nanoTime();
+        long first = -1;
+        int position = Capture.FILE_HEADER;
+        while (position + Capture.RECORD_HEADER <= capture.limit()) {
+            long time = capture.getLong(position);
+            int id = capture.getInt(position + 8);
+            byte kind = capture.get(position + 12);
+            int length = capture.getInt(position + 13);
+            position += Capture.RECORD_HEADER;
+            if (position + length > capture.limit()) {
+                //Server was stopped in the middle of writing
+                break;
+            }
+            ByteBuffer data = capture.slice(position, length);
+            position += length;
+            records++;
+
+            if (original) {
+                if (first < 0) {
+                    first = time;
+                }
+                long wait;
+                while ((wait = start + time - first - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+
+            if (kind == Capture.OPEN) {
+                replayed.put(id, new Replayed());
+                continue;
+            }
+            Replayed connection = replayed.get(id);
+            if (connection == null) {
+                //Opening record was dropped by server
+                continue;
+            }
+            switch (kind) {
+                case Capture.INBOUND -> connection.session.onInput(data);
+                case Capture.OUTBOUND -> {
+                    byte[] bytes = new byte[length];
+                    data.get(bytes);
+                    connection.expected.writeBytes(bytes);
+                }
+                case Capture.END_OF_STREAM -> connection.session.onEndOfStream();
+                case Capture.TIMEOUT -> connection.session.onTimeout();
+                case Capture.CONNECTION_LOST -> connection.session.onConnectionLost();
+                case Capture.SHUTDOWN -> connection.session.onShutdown();
+                case Capture.CLOSE -> replayed.remove(id);
+                default -> throw new IOException("Unknown record kind " + kind + " at " + position);
+            }
+            //Output is taken after every record, as drivers write it before reading again
+            connection.output.flush(connection.channel);
+            if (kind == Capture.CLOSE) {
+                sessions++;
+                if (!Arrays.equals(connection.sent.toByteArray(), connection.expected.toByteArray())) {
+                    mismatched++;
+                }
+            }
+        }
+        incomplete += replayed.size();
+    }
+}
@@ -0,0 +1,262 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Client side of one robot session - speaks the whole protocol, moves on its own field with obstacles,
+ * may recharge between messages and may deliberately make syntax or logic errors
+ */
+class SimulatedRobot {
+    enum Outcome {
+        SECRET,             //robot reached [0,0] and was logged out
+        LOGOUT_EARLY,       //server logged robot out before picking up secret, e.g. too many collisions
+        LOGIN_FAILED,
+        SYNTAX_ERROR,
+        LOGIC_ERROR,
+        KEY_OUT_OF_RANGE,
+        UNEXPECTED_MESSAGE,
+        TIMEOUT,
+        IO_ERROR
+    }
+
+    enum Phase {
+        LOGIN,          //connect until 200 OK
+        NAVIGATION,     //200 OK until 105 GET MESSAGE
+        LOGOUT,         //secret sent until 106 LOGOUT
+        STEP            //client reply until next server message
+    }
+
+    private enum Mistake {
+        NONE, SYNTAX, LOGIC, KEY, LOGIN
+    }
+
+    private static final String SECRET = "Tohle je maly krok pro robota, ale velky krok pro studentstvo!";
+
+    private final LoadGenerator.Settings settings;
+    private final Random random;
+    private final String name;
+    private final int keyId;
+    private final Set<Long> obstacles = new HashSet<>();
+    private final Mistake mistake;
+    //Number of server command, after which robot makes the mistake
+    private final int mistakeStep;
+    private LoadGenerator.Recorder recorder;
+    //When robot sent its last message, for latency of server reply
+    private long lastSent;
+
+    private int x;
+    private int y;
+    private Direction direction;
+    private int step = 0;
+
+    private InputStream input;
+    private OutputStream output;
+
+    SimulatedRobot(LoadGenerator.Settings settings, Random random, int id) {
+        this.settings = settings;
+        this.random = random;
+        this.name = settings.name.replace("%d", String.valueOf(id));
+        //Random values are drawn even when they are given, so the rest of session stays the same for given seed
+        int randomKey = random.nextInt(Constants.KEYS.length);
+        this.keyId = settings.keyId != null ? settings.keyId : randomKey;
+
+        int field = settings.field;
+        do {
+            x = random.nextInt(2 * field + 1) - field;
+            y = random.nextInt(2 * field + 1) - field;
+        } while (x == 0 && y == 0);
+        if (settings.startX != null) {
+            x = settings.startX;
+            y = settings.startY;
+        }
+        direction = Direction.values()[random.nextInt(4)];
+
+        for (int i = 0; i < settings.obstacles; i++) {
+            int obstacleX = random.nextInt(2 * field + 1) - field;
+            int obstacleY = random.nextInt(2 * field + 1) - field;
+            if ((obstacleX != 0 || obstacleY != 0) && (obstacleX != x || obstacleY != y)) {
+                obstacles.add(MessageParser.pack(obstacleX, obstacleY));
+            }
+        }
+
+        mistake = random.nextDouble() < settings.errorRate
+                ? Mistake.values()[1 + random.nextInt(Mistake.values().length - 1)]
+                : Mistake.NONE;
+        mistakeStep = random.nextInt(10);
+    }
+
+    /**
+     * Runs whole session against server
+     *
+     * @param recorder where latencies of phases are recorded
+     * @return how the session ended
+     */
+    Outcome run(LoadGenerator.Recorder recorder) {
+        this.recorder = recorder;
+        long start = System.nanoTime();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(settings.host, settings.port), settings.clientTimeout);
+            socket.setSoTimeout(settings.clientTimeout);
+            socket.setTcpNoDelay(true);
+            input = new BufferedInputStream(socket.getInputStream());
+            output = socket.getOutputStream();
+            return session(start);
+        } catch (SocketTimeoutException e) {
+            return Outcome.TIMEOUT;
+        } catch (IOException e) {
+            return Outcome.IO_ERROR;
+        }
+    }
+
+    private Outcome session(long start) throws IOException {
+        //Authentication
+        send(name);
+        String message = receive();
+        if (!message.equals(Constants.SERVER_KEY_REQUEST)) {
+            return outcomeOf(message);
+        }
+        send(mistake == Mistake.KEY ? "7" : String.valueOf(keyId));
+        message = receive();
+        int nameHash = Authenticator.getNameHash(name.chars().sum());
+        if (!message.equals(String.valueOf((nameHash + Constants.KEYS[keyId].server) % 65536))) {
+            return outcomeOf(message);
+        }
+        int clientHash = (nameHash + Constants.KEYS[keyId].client) % 65536;
+        send(String.valueOf(mistake == Mistake.LOGIN ? (clientHash + 1) % 65536 : clientHash));
+        message = receive();
+        if (!message.equals(Constants.SERVER_OK)) {
+            return outcomeOf(message);
+        }
+        long loggedIn = System.nanoTime();
+        recorder.record(Phase.LOGIN, loggedIn - start);
+
+        //Navigation
+        while (true) {
+            message = receive();
+            switch (message) {
+                case Constants.SERVER_MOVE -> move();
+                case Constants.SERVER_TURN_LEFT -> direction = RotationPlanner.turn(direction, Movement.ROTATE_LEFT);
+                case Constants.SERVER_TURN_RIGHT -> direction = RotationPlanner.turn(direction, Movement.ROTATE_RIGHT);
+                case Constants.SERVER_PICK_UP -> {
+                    recorder.record(Phase.NAVIGATION, System.nanoTime() - loggedIn);
+                    return pickUp();
+                }
+                case Constants.SERVER_LOGOUT -> {
+                    return Outcome.LOGOUT_EARLY;
+                }
+                default -> {
+                    return outcomeOf(message);
+                }
+            }
+            if (step++ == mistakeStep && mistake != Mistake.NONE) {
+                return makeMistake();
+            }
+            maybeRecharge();
+            send("OK " + x + " " + y);
+        }
+    }
+
+    private Outcome pickUp() throws IOException {
+        maybeRecharge();
+        long sent = System.nanoTime();
+        send(SECRET);
+        String message = receive();
+        if (!message.equals(Constants.SERVER_LOGOUT)) {
+            return outcomeOf(message);
+        }
+        recorder.record(Phase.LOGOUT, System.nanoTime() - sent);
+        return Outcome.SECRET;
+    }
+
+    private Outcome makeMistake() throws IOException {
+        if (mistake == Mistake.LOGIC) {
+            //After RECHARGING anything else than FULL POWER is logic error
+            send(Constants.RECHARGING);
+            send("OK " + x + " " + y);
+        } else {
+            //Floating point coordinates are syntax error
+            send("OK " + x + ".5 " + y);
+        }
+        return outcomeOf(receive());
+    }
+
+    private void move() {
+        int nextX = x + (direction == Direction.RIGHT ? 1 : direction == Direction.LEFT ? -1 : 0);
+        int nextY = y + (direction == Direction.UP ? 1 : direction == Direction.DOWN ? -1 : 0);
+        if (!obstacles.contains(MessageParser.pack(nextX, nextY))) {
+            x = nextX;
+            y = nextY;
+        }
+    }
+
+    private void maybeRecharge() throws IOException {
+        if (random.nextDouble() < settings.rechargingRate) {
+            send(Constants.RECHARGING);
+            try {
+                Thread.sleep(settings.rechargingTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            send(Constants.FULL_POWER);
+        }
+    }
+
+    private Outcome outcomeOf(String message) {
+        return switch (message) {
+            case Constants.SERVER_LOGIN_FAILED -> Outcome.LOGIN_FAILED;
+            case Constants.SERVER_SYNTAX_ERROR -> Outcome.SYNTAX_ERROR;
+            case Constants.SERVER_LOGIC_ERROR -> Outcome.LOGIC_ERROR;
+            case Constants.SERVER_KEY_OUT_OF_RANGE_ERROR -> Outcome.KEY_OUT_OF_RANGE;
+            default -> Outcome.UNEXPECTED_MESSAGE;
+        };
+    }
+
+    /**
+     * @return true if session ended the way its deliberate mistake should end it
+     */
+    boolean isExpected(Outcome outcome) {
+        return switch (mistake) {
+            case NONE -> outcome == Outcome.SECRET || outcome == Outcome.LOGOUT_EARLY;
+            case SYNTAX -> outcome == Outcome.SYNTAX_ERROR || outcome == Outcome.SECRET || outcome == Outcome.LOGOUT_EARLY;
+            case LOGIC -> outcome == Outcome.LOGIC_ERROR || outcome == Outcome.SECRET || outcome == Outcome.LOGOUT_EARLY;
+            case KEY -> outcome == Outcome.KEY_OUT_OF_RANGE;
+            case LOGIN -> outcome == Outcome.LOGIN_FAILED;
+        };
+    }
+
+    private void send(String message) throws IOException {
+        output.write((message + Constants.MSG_ENDING).getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+        lastSent = System.nanoTime();
+    }
+
+    /**
+     * @return server message without \a\b
+     */
+    private String receive() throws IOException {
+        StringBuilder message = new StringBuilder();
+        int previous = -1;
+        while (true) {
+            int current = input.read();
+            if (current == -1) {
+                throw new IOException("Connection closed by server");
+            }
+            if (previous == '\u0007' && current == '\b') {
+                recorder.record(Phase.STEP, System.nanoTime() - lastSent);
+                return message.substring(0, message.length() - 1);
+            }
+            message.append((char) current);
+            previous = current;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides whether accepted connection gets a session, before any per-session object is allocated.
+ * Limits number of open connections server-wide and rate of new connections per source IP address.
+ * <p>
+ * Every address is hashed into one of fixed number of token buckets, so memory does not grow with number
+ * of clients, addresses sharing a bucket share also its rate. Bucket is kept as a single long - time when it
+ * becomes full again - taking a token moves that time by one interval, so buckets need no locks nor refill thread.
+ * <p>
+ * Configured by "admission.max" (open connections), "admission.rate" (new connections
+ * per second from one address) and "admission.burst" (connections from one address at once), see Config.
+ * Rate limit is disabled by default, as tester and load generator connect from a single address.
+ */
+public class AdmissionControl {
+    /* Number of token buckets, power of two */
+    private static final int BUCKETS = 4096;
+
+    private final int maxConnections;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    //Time in ns when bucket would be full again, relative to origin - 0 is a full bucket
+    private final AtomicLongArray buckets;
+    //Time between two tokens of one bucket, 0 when rate limit is disabled
+    private final long interval;
+    //How far ahead of now can bucket be - time needed to refill all tokens
+    private final long capacity;
+    private final long origin = System.nanoTime();
+
+    /**
+     * @param maxConnections maximum number of open connections
+     * @param rate           new connections per second allowed from one address, 0 disables rate limit
+     * @param burst          number of connections allowed from one address at once
+     */
+    public AdmissionControl(int maxConnections, double rate, int burst) {
+        this.maxConnections = maxConnections;
+        this.interval = rate > 0 ? Math.max(1, (long) (1_000_000_000L / rate)) : 0;
+        this.capacity = interval * Math.max(burst, 1);
+        this.buckets = interval > 0 ? new AtomicLongArray(BUCKETS) : null;
+    }
+
+    /**
+     * @param config configuration with admission limits
+     * @return admission control configured by "admission.*" values
+     */
+    public static AdmissionControl fromConfig(Config config) {
+        return new AdmissionControl(config.admissionMax, config.admissionRate, config.admissionBurst);
+    }
+
+    /**
+     * Admits connection, unless there are too many connections or its address exceeded its rate.
+     * Admitted connection has to be released once it is closed.
+     *
+     * @param address source address of connection
+     * @return false if connection should be closed right away
+     */
+    public boolean admit(InetAddress address) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            Metrics.sessionRejected();
+            return false;
+        }
+        if (interval > 0 && !takeToken(address)) {
+            connections.decrementAndGet();
+            Metrics.sessionRateLimited();
+            return false;
+        }
+        return true;
+    }
+
+    public void release() {
+        connections.decrementAndGet();
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    private boolean takeToken(InetAddress address) {
+        int bucket = hash(address.hashCode()) & (BUCKETS - 1);
+        long now = System.nanoTime() - origin;
+        while (true) {
+            long full = buckets.get(bucket);
+            long next = Math.max(full, now) + interval;
+            if (next - now > capacity) {
+                return false;
+            }
+            if (buckets.compareAndSet(bucket, full, next)) {
+                return true;
+            }
+        }
+    }
+
+    private static int hash(int value) {
+        return value ^ (value >>> 16) ^ (value >>> 7);
+    }
+}
@@ -0,0 +1,87 @@
+package cz.cvut.fit.psi.semestral;
+
+import cz.cvut.fit.psi.semestral.Exceptions.KeyOutOfRangeException;
+import cz.cvut.fit.psi.semestral.Exceptions.LoginFailedException;
+
+/**
+ * Authentication of one client. Name hash is computed from sum of name bytes counted by FrameDecoder
+ * while the name was decoded, server and client hashes for all keys are then computed in one pass.
+ */
+public class Authenticator {
+    private final KeyPair[] keys;
+    private final int[] serverHashes;
+    private final int[] clientHashes;
+    private int keyId = -1;
+
+    public Authenticator() {
+        this(Constants.KEYS);
+    }
+
+    /**
+     * @param keys key pairs client can choose from by key ID
+     */
+    public Authenticator(KeyPair[] keys) {
+        this.keys = keys;
+        this.serverHashes = new int[keys.length];
+        this.clientHashes = new int[keys.length];
+    }
+
+    /**
+     * Computes hashes for all keys from robot name
+     *
+     * @param nameSum sum of ASCII values of robot name
+     */
+    public void setName(int nameSum) {
+        int nameHash = getNameHash(nameSum);
+        for (int i = 0; i < serverHashes.length; i++) {
+            serverHashes[i] = (nameHash + keys[i].server) % 65536;
+            clientHashes[i] = (nameHash + keys[i].client) % 65536;
+        }
+    }
+
+    /**
+     * @param keyId key ID sent by client
+     * @throws KeyOutOfRangeException client send key that is outside of range
+     */
+    public void setKeyId(int keyId) throws KeyOutOfRangeException {
+        if (keyId < 0 || keyId >= serverHashes.length) {
+            throw KeyOutOfRangeException.INSTANCE;
+        }
+        this.keyId = keyId;
+    }
+
+    /**
+     * Queues server confirmation hash for chosen key
+     *
+     * @param output output buffer of client connection
+     */
+    public void writeServerHash(OutputBuffer output) {
+        output.putNumber(serverHashes[keyId]);
+    }
+
+    /**
+     * @param receivedClientHash confirmation hash sent by client
+     * @throws LoginFailedException client send incorrect hash for authentication
+     */
+    public void verify(int receivedClientHash) throws LoginFailedException {
+        if (receivedClientHash != clientHashes[keyId]) {
+            throw LoginFailedException.INSTANCE;
+        }
+    }
+
+    public int getServerHash() {
+        return serverHashes[keyId];
+    }
+
+    public int getClientHash() {
+        return clientHashes[keyId];
+    }
+
+    /**
+     * @param nameSum sum of ASCII values of robot name, multiplied in long as configured name may be long
+     * @return hash between 0 and 65535
+     */
+    static int getNameHash(int nameSum) {
+        return (int) ((long) nameSum * 1000 % 65536);
+    }
+}
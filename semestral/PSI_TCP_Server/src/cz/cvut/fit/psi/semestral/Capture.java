@@ -0,0 +1,233 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Capture of robot sessions for offline replay - connection drivers record every chunk of bytes received from
+ * and written to the client and every event that ends the session. Records are copied into RingBuffer
+ * as messages of Log are, a background thread writes them in batches through a FileChannel.
+ * Capture is started by Server when "capture.file" is configured, until then every call costs only a comparison.
+ * <p>
+ * File starts with MAGIC, VERSION and wall clock time of the start in ms, followed by records:
+ * time in ns since the start (long), session id (int), kind (byte), length of data (int) and data.
+ * Records of one session are in the order they happened, records are dropped when writer does not keep up.
+ */
+public final class Capture {
+    /* Kinds of records */
+    public static final byte OPEN = 0;
+    public static final byte INBOUND = 1;
+    public static final byte OUTBOUND = 2;
+    public static final byte END_OF_STREAM = 3;
+    public static final byte TIMEOUT = 4;
+    public static final byte CONNECTION_LOST = 5;
+    public static final byte SHUTDOWN = 6;
+    public static final byte CLOSE = 7;
+
+    /* File format */
+    public static final int MAGIC = 0x50534943; //"PSIC"
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER = 16; //bytes
+    public static final int RECORD_HEADER = 17; //bytes
+    /* Session id of connections that are not captured */
+    public static final int NONE = 0;
+
+    /* Number of ring buffer slots */
+    private static final int CAPACITY = 16384;
+    /* Maximum number of records written at once */
+    private static final int BATCH = 1024;
+    /* Initial size of data of every slot, grows for longer chunks */
+    private static final int SLOT_DATA = 128; //bytes
+    private static final long IDLE_PARK = 1_000_000; //ns
+
+    private static final AtomicInteger sessions = new AtomicInteger();
+    private static final long start = System.nanoTime();
+    private static RingBuffer<Entry> ring;
+    private static volatile FileChannel file;
+
+    private Capture() {
+    }
+
+    /**
+     * Starts writing captured sessions into file, called once before connections are accepted
+     *
+     * @param path capture file, existing file is overwritten
+     * @throws IOException file cannot be created
+     */
+    public static void start(Path path) throws IOException {
+        if (file != null) {
+            throw new IllegalStateException("Capture is already started");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER)
+                .putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        ring = new RingBuffer<>(CAPACITY, Entry::new);
+        //Published after the ring, sessions that see the file see the ring as well
+        file = channel;
+
+        Thread writer = new Thread(Capture::writeLoop, "capture-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Log.info("Capturing sessions to {}", path);
+    }
+
+    public static boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Starts capture of new connection
+     *
+     * @return id of session to be passed to other calls, NONE when capture is disabled
+     */
+    public static int open() {
+        if (file == null) {
+            return NONE;
+        }
+        int session = sessions.incrementAndGet();
+        record(session, OPEN, null, 0, 0);
+        return session;
+    }
+
+    /**
+     * Records bytes received from client
+     */
+    public static void inbound(int session, byte[] bytes, int offset, int length) {
+        if (session != NONE) {
+            record(session, INBOUND, bytes, offset, length);
+        }
+    }
+
+    /**
+     * Records bytes written to client, buffer is not modified
+     */
+    public static void outbound(int session, ByteBuffer buffer, int offset, int length) {
+        if (session != NONE) {
+            record(session, OUTBOUND, buffer, offset, length);
+        }
+    }
+
+    /**
+     * Records event without data, e.g. TIMEOUT or CLOSE
+     */
+    public static void event(int session, byte kind) {
+        if (session != NONE) {
+            record(session, kind, null, 0, 0);
+        }
+    }
+
+    /**
+     * Waits until all records captured so far are written, at most one second
+     */
+    public static void flush() {
+        if (file == null) {
+            return;
+        }
+        ring.awaitCommitted(1_000_000_000L);
+        try {
+            file.force(false);
+        } catch (IOException e) {
+            Log.warn("Cannot flush capture file - {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return number of records dropped because ring buffer was full
+     */
+    public static long getDropped() {
+        return file == null ? 0 : ring.getDropped();
+    }
+
+    /**
+     * Copies data into ring buffer slot, drops the record when buffer is full
+     *
+     * @param data byte[], ByteBuffer or null
+     */
+    private static void record(int session, byte kind, Object data, int offset, int length) {
+        Entry entry = ring.claim();
+        if (entry == null) {
+            return;
+        }
+        entry.time = System.nanoTime() - start;
+        entry.session = session;
+        entry.kind = kind;
+        entry.length = length;
+        if (entry.data.length < length) {
+            entry.data = new byte[length];
+        }
+        if (data instanceof byte[] bytes) {
+            System.arraycopy(bytes, offset, entry.data, 0, length);
+        } else if (data instanceof ByteBuffer buffer) {
+            buffer.get(offset, entry.data, 0, length);
+        }
+        ring.publish(entry);
+    }
+
+    private static void writeLoop() {
+        ByteBuffer batch = ByteBuffer.allocateDirect(256 * 1024);
+        while (true) {
+            int count = 0;
+            Entry entry;
+            try {
+                while (count < BATCH && (entry = ring.peek()) != null) {
+                    if (batch.remaining() < RECORD_HEADER + entry.length) {
+                        write(batch);
+                    }
+                    batch.putLong(entry.time).putInt(entry.session).put(entry.kind).putInt(entry.length);
+                    if (batch.remaining() >= entry.length) {
+                        batch.put(entry.data, 0, entry.length);
+                    } else {
+                        //Chunk longer than the whole batch goes directly
+                        write(batch);
+                        ByteBuffer chunk = ByteBuffer.wrap(entry.data, 0, entry.length);
+                        while (chunk.hasRemaining()) {
+                            file.write(chunk);
+                        }
+                    }
+                    ring.release(entry);
+                    count++;
+                }
+                if (count == 0) {
+                    LockSupport.parkNanos(IDLE_PARK);
+                    continue;
+                }
+                write(batch);
+            } catch (IOException e) {
+                Log.error("Capture stopped, cannot write capture file - {}", e.getMessage());
+                return;
+            }
+            ring.commit();
+        }
+    }
+
+    /**
+     * Writes everything put into buffer to file and clears it
+     */
+    private static void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            file.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Slot of ring buffer, reused for the whole run of server
+     */
+    private static class Entry extends RingBuffer.Slot {
+        private long time;
+        private int session;
+        private byte kind;
+        private int length;
+        private byte[] data = new byte[SLOT_DATA];
+    }
+}
@@ -0,0 +1,276 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Server configuration as an immutable snapshot. Values are merged from these sources, later ones win:
+ * defaults from Constants, system properties, properties file given by "--config=file"
+ * and "--key=value" arguments.
+ * <p>
+ * Current snapshot is kept in a volatile field, so reading it by get() takes no lock. Sessions take the snapshot
+ * once when they start, so one session always works with consistent values and new values apply to new sessions.
+ * Properties file is checked for changes every second, changed values are reloaded atomically by replacing
+ * the whole snapshot. Values used only when server starts (STATIC_KEYS) are kept from the running snapshot.
+ * <p>
+ * Only "log.file" stays a system property, Log opens its output before configuration is read.
+ * "log.level" given to JVM is used until configuration is loaded.
+ */
+public final class Config {
+    /* Keys that need restart of server to take effect */
+    static final List<String> STATIC_KEYS = List.of("port", "mode", "threads", "backlog", "acceptor",
+            "admission.max", "admission.rate", "admission.burst", "metrics.port", "capture.file",
+            "obstacle.cache", "obstacle.cache.size", "obstacle.cache.ttl");
+    /* How often properties file is checked for changes */
+    private static final long RELOAD_INTERVAL = 1000; //ms
+
+    //Until load() is called, e.g. in benchmarks, only defaults are used, invalid properties are reported by load()
+    private static volatile Config current = new Config(new Properties());
+
+    /* Restart only */
+    final int port;
+    final String mode;             //thread, pool, virtual or nio
+    final int threads;             //maximum running sessions, or event loops in nio mode, 0 for default of mode
+    final int backlog;
+    final String acceptor;         //shared or reuseport, nio mode only
+    final int admissionMax;
+    final double admissionRate;
+    final int admissionBurst;
+    final int metricsPort;         //0 when metrics endpoint is disabled
+    final String captureFile;      //null when capture is disabled
+    final boolean obstacleCache;
+    final int obstacleCacheSize;
+    final int obstacleCacheTtl;    //ms
+
+    /* Reloadable */
+    final int timeout;             //ms
+    final int rechargingTimeout;   //ms
+    final long loginDeadline;      //ms
+    final long shutdownDrain;      //ms
+    final KeyPair[] keys;
+    final int maxRecharges;
+    final int maxCollisions;
+    final String navigation;
+    final int inputBuffer;         //bytes
+    final int outputBuffer;        //bytes
+    final Log.Level logLevel;
+    //Maximum lengths of messages indexed by MessageType ordinal, configured as "message.<type>"
+    private final int[] messageLengths = new int[MessageType.values().length];
+    final int longestMessage;
+
+    //Merged properties this snapshot was built from, to find out what changed on reload
+    private final Properties properties;
+
+    private Config(Properties properties) {
+        this.properties = properties;
+        port = getInt(properties, "port", Constants.PORT, 1);
+        mode = properties.getProperty("mode", "thread").toLowerCase();
+        if (!List.of("thread", "pool", "virtual", "nio").contains(mode)) {
+            throw new IllegalArgumentException("Unknown server mode: " + mode);
+        }
+        threads = getInt(properties, "threads", 0, 0);
+        backlog = getInt(properties, "backlog", 100, 0);
+        acceptor = properties.getProperty("acceptor", "shared").toLowerCase();
+        if (!acceptor.equals("shared") && !acceptor.equals("reuseport")) {
+            throw new IllegalArgumentException("Unknown acceptor: " + acceptor);
+        }
+        admissionMax = getInt(properties, "admission.max", 10_000, 1);
+        admissionRate = Double.parseDouble(properties.getProperty("admission.rate", "0"));
+        admissionBurst = getInt(properties, "admission.burst", 20, 1);
+        metricsPort = getInt(properties, "metrics.port", 0, 0, 65535);
+        captureFile = properties.getProperty("capture.file");
+        obstacleCache = Boolean.parseBoolean(properties.getProperty("obstacle.cache"));
+        obstacleCacheSize = getInt(properties, "obstacle.cache.size", 4096, 1);
+        obstacleCacheTtl = getInt(properties, "obstacle.cache.ttl", 60_000, 1);
+
+        timeout = getInt(properties, "timeout", Constants.TIMEOUT, 1);
+        rechargingTimeout = getInt(properties, "timeout.recharging", Constants.TIMEOUT_RECHARGING, 1);
+        loginDeadline = getInt(properties, "login.deadline", Constants.LOGIN_DEADLINE, 1);
+        shutdownDrain = getInt(properties, "shutdown.drain", Constants.SHUTDOWN_DRAIN, 0);
+        keys = parseKeys(properties.getProperty("keys"));
+        maxRecharges = getInt(properties, "recharging.max", Constants.MAX_RECHARGES, 0);
+        maxCollisions = getInt(properties, "collisions.max", Constants.MAX_COLLISIONS, 1);
+        navigation = properties.getProperty("navigation", "simple");
+        NavigationStrategy.create(navigation);
+        inputBuffer = getInt(properties, "buffer.input", 1024, 16);
+        outputBuffer = getInt(properties, "buffer.output", 1024, 128);
+        String level = properties.getProperty("log.level", "INFO");
+        try {
+            logLevel = Log.Level.valueOf(level.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown log level: " + level);
+        }
+
+        int longest = 0;
+        for (MessageType type : MessageType.values()) {
+            //Every message has to fit at least one byte and \a\b, numbers in message have to fit into int
+            messageLengths[type.ordinal()] = getInt(properties, "message." + type.getKey(), type.getMaxLength(), 3,
+                    type.getLengthLimit());
+            longest = Math.max(longest, messageLengths[type.ordinal()]);
+        }
+        longestMessage = longest;
+    }
+
+    /**
+     * @return current configuration, never null
+     */
+    public static Config get() {
+        return current;
+    }
+
+    /**
+     * Loads configuration from all sources and makes it current,
+     * starts watching properties file when one is given
+     *
+     * @param args "--key=value" arguments, "--config=file" names properties file
+     * @throws IOException              properties file could not be read
+     * @throws IllegalArgumentException some value is not valid
+     */
+    public static Config load(List<String> args) throws IOException {
+        Path file = null;
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                file = Path.of(arg.substring("--config=".length()));
+            }
+        }
+        Config config = new Config(merge(file, args));
+        current = config;
+        Log.setLevel(config.logLevel);
+        if (file != null) {
+            Log.info("Configuration loaded from {}", file);
+            startWatching(file, args);
+        }
+        return config;
+    }
+
+    /**
+     * @param type kind of client message
+     * @return maximum length of message including \a\b
+     */
+    int getMaxLength(MessageType type) {
+        return messageLengths[type.ordinal()];
+    }
+
+    /**
+     * Reads all sources again and replaces current snapshot, unless some value is not valid
+     */
+    static void reload(Path file, List<String> args) {
+        Config running = current;
+        Properties properties;
+        try {
+            properties = merge(file, args);
+        } catch (IOException e) {
+            Log.warn("Cannot read configuration - {}", e.getMessage());
+            return;
+        }
+        for (String key : STATIC_KEYS) {
+            String value = running.properties.getProperty(key);
+            if (!String.valueOf(value).equals(String.valueOf(properties.getProperty(key)))) {
+                Log.warn("Configuration {} changes only after restart.", key);
+            }
+            if (value == null) {
+                properties.remove(key);
+            } else {
+                properties.setProperty(key, value);
+            }
+        }
+        try {
+            current = new Config(properties);
+            Log.setLevel(current.logLevel);
+            Log.info("Configuration reloaded from {}", file);
+        } catch (IllegalArgumentException e) {
+            Log.warn("Configuration was not reloaded - {}", e.getMessage());
+        }
+    }
+
+    private static void startWatching(Path file, List<String> args) throws IOException {
+        FileTime loaded = Files.getLastModifiedTime(file);
+        Thread watcher = new Thread(() -> {
+            FileTime seen = loaded;
+            while (true) {
+                try {
+                    Thread.sleep(RELOAD_INTERVAL);
+                    FileTime modified = Files.getLastModifiedTime(file);
+                    if (!modified.equals(seen)) {
+                        seen = modified;
+                        reload(file, args);
+                    }
+                } catch (IOException e) {
+                    Log.warn("Cannot check configuration file - {}", e.getMessage());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "config-reload");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private static Properties merge(Path file, List<String> args) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(System.getProperties());
+        if (file != null) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --key=value, got: " + arg);
+            }
+            properties.setProperty(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return properties;
+    }
+
+    private static int getInt(Properties properties, String key, int defaultValue, int min) {
+        return getInt(properties, key, defaultValue, min, Integer.MAX_VALUE);
+    }
+
+    private static int getInt(Properties properties, String key, int defaultValue, int min, int max) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " is not a number: " + value);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException(key + " must be at least " + min + ": " + value);
+        }
+        if (parsed > max) {
+            throw new IllegalArgumentException(key + " must be at most " + max + ": " + value);
+        }
+        return parsed;
+    }
+
+    /**
+     * @param value key pairs "server:client" separated by commas, null for Constants.KEYS
+     */
+    private static KeyPair[] parseKeys(String value) {
+        if (value == null) {
+            return Constants.KEYS;
+        }
+        List<KeyPair> keys = new ArrayList<>();
+        for (String pair : value.split(",")) {
+            String[] hashes = pair.trim().split(":");
+            try {
+                keys.add(new KeyPair(Integer.parseInt(hashes[0].trim()), Integer.parseInt(hashes[1].trim())));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Key pair is not server:client: " + pair);
+            }
+        }
+        return keys.toArray(new KeyPair[0]);
+    }
+}
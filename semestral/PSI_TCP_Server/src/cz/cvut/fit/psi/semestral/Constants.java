@@ -1,8 +1,8 @@
 package cz.cvut.fit.psi.semestral;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * Protocol constants and default values of configuration, see Config
+ */
 public class Constants {
     public static final String HOST = "127.0.0.1";
     public static final Integer PORT = 65432;
@@ -10,6 +10,23 @@ public class Constants {
     /* Timeouts */
     public static final Integer TIMEOUT = 1000; //ms
     public static final Integer TIMEOUT_RECHARGING = 5000; //ms
+    //Whole authentication - three messages, each of them may be preceded by whole recharging of robot
+    public static final Integer LOGIN_DEADLINE = 3 * (2 * TIMEOUT + TIMEOUT_RECHARGING); //ms
+    //How long sessions in progress can continue after server started shutting down
+    public static final Integer SHUTDOWN_DRAIN = 10000; //ms
+
+    /* Maximum number of recharging cycles in one session */
+    public static final Integer MAX_RECHARGES = 100;
+    /* Robot is logged out after this many collisions with obstacles */
+    public static final Integer MAX_COLLISIONS = 20;
+
+    /* Upper bounds of configured message lengths, including \a\b */
+    //Number of at most 9 characters always fits into int
+    public static final Integer MAX_NUMBER_LENGTH = 9 + 2;
+    //"OK x y" leaves at most 9 characters for each number
+    public static final Integer MAX_POSITION_LENGTH = "OK 0 ".length() + 9 + 2;
+    //Text is kept in decoder of every session
+    public static final Integer MAX_TEXT_LENGTH = 64 * 1024;
 
     /* Client messages */
     public static final String MSG_ENDING = "\u0007\b"; // "\\a\b" doesnt work, so needed to write it in this form
@@ -40,42 +57,4 @@ public class Constants {
         KEYS[3] = new KeyPair(16443, 29533);
         KEYS[4] = new KeyPair(18189, 21952);
     }
-
-    /* Map for length of message types */
-    public static Map<String, Integer> MSG_TYPE;
-
-    static {
-        MSG_TYPE = new HashMap<>();
-        MSG_TYPE.put("name", 20);
-        MSG_TYPE.put("key", 5);
-        MSG_TYPE.put("confirmation", 7);
-        MSG_TYPE.put("ok", 12);
-        MSG_TYPE.put("recharging", 12);
-        MSG_TYPE.put("full_power", 12);
-        MSG_TYPE.put("secret", 100);
-    }
-
-    /* Map for determining, which direction robot will be facing after turning LEFT */
-    public static Map<Direction, Direction> TURN_LEFT;
-
-    static {
-        TURN_LEFT = new HashMap<>();
-        TURN_LEFT.put(Direction.LEFT, Direction.DOWN);
-        TURN_LEFT.put(Direction.DOWN, Direction.RIGHT);
-        TURN_LEFT.put(Direction.RIGHT, Direction.UP);
-        TURN_LEFT.put(Direction.UP, Direction.LEFT);
-        TURN_LEFT.put(Direction.UNDEFINED, Direction.UNDEFINED);
-    }
-
-    /* Map for determining, which direction robot will be facing after turning RIGHT */
-    public static Map<Direction, Direction> TURN_RIGHT;
-
-    static {
-        TURN_RIGHT = new HashMap<>();
-        TURN_RIGHT.put(Direction.LEFT, Direction.UP);
-        TURN_RIGHT.put(Direction.UP, Direction.RIGHT);
-        TURN_RIGHT.put(Direction.RIGHT, Direction.DOWN);
-        TURN_RIGHT.put(Direction.DOWN, Direction.LEFT);
-        TURN_RIGHT.put(Direction.UNDEFINED, Direction.UNDEFINED);
-    }
 }
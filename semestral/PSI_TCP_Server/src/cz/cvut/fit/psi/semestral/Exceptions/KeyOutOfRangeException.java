@@ -1,4 +1,12 @@
 package cz.cvut.fit.psi.semestral.Exceptions;
 
-public class KeyOutOfRangeException extends Exception {
+import cz.cvut.fit.psi.semestral.Metrics;
+import cz.cvut.fit.psi.semestral.Response;
+
+public class KeyOutOfRangeException extends ProtocolException {
+    public static final KeyOutOfRangeException INSTANCE = new KeyOutOfRangeException();
+
+    private KeyOutOfRangeException() {
+        super("Key out of range error occurred.", Response.KEY_OUT_OF_RANGE_ERROR, Metrics.Failure.KEY_OUT_OF_RANGE);
+    }
 }
@@ -1,4 +1,12 @@
 package cz.cvut.fit.psi.semestral.Exceptions;
 
-public class LogicException extends Exception {
+import cz.cvut.fit.psi.semestral.Metrics;
+import cz.cvut.fit.psi.semestral.Response;
+
+public class LogicException extends ProtocolException {
+    public static final LogicException INSTANCE = new LogicException();
+
+    private LogicException() {
+        super("Logic exception occurred - wrong sequence of RECHARGING, FULL_POWER.", Response.LOGIC_ERROR, Metrics.Failure.LOGIC);
+    }
 }
@@ -1,5 +1,12 @@
 package cz.cvut.fit.psi.semestral.Exceptions;
 
-public class LoginFailedException extends Exception {
-}
+import cz.cvut.fit.psi.semestral.Metrics;
+import cz.cvut.fit.psi.semestral.Response;
+
+public class LoginFailedException extends ProtocolException {
+    public static final LoginFailedException INSTANCE = new LoginFailedException();
 
+    private LoginFailedException() {
+        super("Login error occurred.", Response.LOGIN_FAILED, Metrics.Failure.LOGIN_FAILED);
+    }
+}
@@ -0,0 +1,33 @@
+package cz.cvut.fit.psi.semestral.Exceptions;
+
+import cz.cvut.fit.psi.semestral.Metrics;
+import cz.cvut.fit.psi.semestral.Response;
+
+/**
+ * Error of client that ends its session. Clients causing errors are common, so exceptions do not capture
+ * stack trace and every type has a single shared instance - throwing one costs neither time nor allocation.
+ * Every error knows the response sent to client, and the failure recorded by metrics.
+ */
+public abstract class ProtocolException extends Exception {
+    private final Response response;
+    private final Metrics.Failure failure;
+
+    /**
+     * @param reason   logged when session ends with this error
+     * @param response error sent to client, null when nothing is sent
+     * @param failure  reason of failed session for metrics
+     */
+    protected ProtocolException(String reason, Response response, Metrics.Failure failure) {
+        super(reason, null, false, false);
+        this.response = response;
+        this.failure = failure;
+    }
+
+    public Response getResponse() {
+        return response;
+    }
+
+    public Metrics.Failure getFailure() {
+        return failure;
+    }
+}
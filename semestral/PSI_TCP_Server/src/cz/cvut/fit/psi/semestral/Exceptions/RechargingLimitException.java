@@ -0,0 +1,15 @@
+package cz.cvut.fit.psi.semestral.Exceptions;
+
+import cz.cvut.fit.psi.semestral.Metrics;
+import cz.cvut.fit.psi.semestral.Response;
+
+/**
+ * Robot started recharging more times than one session allows, protocol has no own error for it
+ */
+public class RechargingLimitException extends ProtocolException {
+    public static final RechargingLimitException INSTANCE = new RechargingLimitException();
+
+    private RechargingLimitException() {
+        super("Robot recharged too many times.", Response.LOGIC_ERROR, Metrics.Failure.RECHARGING_LIMIT);
+    }
+}
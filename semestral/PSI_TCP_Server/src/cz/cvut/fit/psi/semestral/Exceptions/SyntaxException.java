@@ -1,4 +1,12 @@
 package cz.cvut.fit.psi.semestral.Exceptions;
 
-public class SyntaxException extends Exception {
+import cz.cvut.fit.psi.semestral.Metrics;
+import cz.cvut.fit.psi.semestral.Response;
+
+public class SyntaxException extends ProtocolException {
+    public static final SyntaxException INSTANCE = new SyntaxException();
+
+    private SyntaxException() {
+        super("Syntax error occurred.", Response.SYNTAX_ERROR, Metrics.Failure.SYNTAX);
+    }
 }
@@ -1,4 +1,14 @@
 package cz.cvut.fit.psi.semestral.Exceptions;
 
-public class TimeoutException extends Exception{
+import cz.cvut.fit.psi.semestral.Metrics;
+
+/**
+ * Client did not send message in time, connection is closed without any response
+ */
+public class TimeoutException extends ProtocolException {
+    public static final TimeoutException INSTANCE = new TimeoutException();
+
+    private TimeoutException() {
+        super("Timeout exception occurred in readMessage.", null, Metrics.Failure.TIMEOUT);
+    }
 }
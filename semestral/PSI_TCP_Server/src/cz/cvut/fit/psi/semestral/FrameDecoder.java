@@ -0,0 +1,162 @@
+package cz.cvut.fit.psi.semestral;
+
+import cz.cvut.fit.psi.semestral.Exceptions.SyntaxException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits bytes received from client into messages terminated by \a\b, works incrementally across partial reads.
+ * Message contents are kept in one reused array, length is checked on every byte, so too long message
+ * is detected at the first byte beyond the limit.
+ * Message that can still become "RECHARGING" is allowed to exceed shorter limits, as robot may start recharging anytime.
+ */
+public class FrameDecoder {
+    private static final byte A = '\u0007';
+    private static final byte B = '\b';
+    private static final byte[] RECHARGING = Constants.RECHARGING.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FULL_POWER = Constants.FULL_POWER.getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] frame;
+    //Number of bytes in frame, that are for sure part of the message
+    private int length = 0;
+    //Last byte was \a, which is either part of message or start of \a\b
+    private boolean pendingA = false;
+    //Bytes received so far are the beginning of "RECHARGING"
+    private boolean rechargingPrefix = true;
+    //Sum of message bytes, used for hash of robot name
+    private int sum = 0;
+    //Last call of decode() finished a message, next one starts a new message
+    private boolean complete = false;
+    //Maximum length of message including \a\b
+    private int maxMessageLength;
+    //RECHARGING may come instead of expected message
+    private boolean rechargingAllowed = true;
+
+    /**
+     * @param capacity maximum length of message that can be expected, including \a\b
+     */
+    public FrameDecoder(int capacity) {
+        this.frame = new byte[Math.max(capacity, RECHARGING.length + 2)];
+        this.maxMessageLength = capacity;
+    }
+
+    /**
+     * Sets maximum length of currently decoded message, RECHARGING is allowed instead of it
+     *
+     * @param maxMessageLength maximum length of message including \a\b
+     */
+    public void expect(int maxMessageLength) {
+        expect(maxMessageLength, true);
+    }
+
+    /**
+     * Sets limits of currently decoded message
+     *
+     * @param maxMessageLength  maximum length of message including \a\b
+     * @param rechargingAllowed whether RECHARGING may exceed maximum length, see MessageType
+     */
+    public void expect(int maxMessageLength, boolean rechargingAllowed) {
+        this.maxMessageLength = Math.min(maxMessageLength, frame.length);
+        this.rechargingAllowed = rechargingAllowed;
+    }
+
+    /**
+     * Consumes bytes from buffer until the end of message, bytes after the message are left in buffer
+     *
+     * @param input buffer ready for reading
+     * @return true if whole message was decoded, false if more bytes are needed
+     * @throws SyntaxException message is longer than allowed
+     */
+    public boolean decode(ByteBuffer input) throws SyntaxException {
+        if (complete) {
+            reset();
+        }
+        while (input.hasRemaining()) {
+            byte currByte = input.get();
+
+            if (pendingA) {
+                if (currByte == B) {
+                    checkComplete();
+                    complete = true;
+                    return true;
+                }
+                //Previous \a was part of message
+                append(A);
+            }
+            pendingA = currByte == A;
+            if (!pendingA) {
+                append(currByte);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return array containing decoded message, valid until next call of decode()
+     */
+    public byte[] getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return length of decoded message without \a\b
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return sum of unsigned values of decoded message bytes
+     */
+    public int getSum() {
+        return sum;
+    }
+
+    /**
+     * @return true if decoded message is "RECHARGING"
+     */
+    public boolean isRecharging() {
+        return rechargingPrefix && length == RECHARGING.length;
+    }
+
+    /**
+     * @return true if decoded message is "FULL POWER", compared without creating string
+     */
+    public boolean isFullPower() {
+        return Arrays.equals(frame, 0, length, FULL_POWER, 0, FULL_POWER.length);
+    }
+
+    /**
+     * @return decoded message without \a\b as string
+     */
+    public String getString() {
+        return new String(frame, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    public void reset() {
+        length = 0;
+        sum = 0;
+        pendingA = false;
+        rechargingPrefix = true;
+        complete = false;
+    }
+
+    private void append(byte currByte) throws SyntaxException {
+        rechargingPrefix = rechargingPrefix && length < RECHARGING.length && RECHARGING[length] == currByte;
+        frame[length++] = currByte;
+        sum += currByte & 0xFF;
+
+        //Subtract 2 for \a\b
+        if (length > maxMessageLength - 2 && !(rechargingAllowed && rechargingPrefix)) {
+            throw SyntaxException.INSTANCE;
+        }
+    }
+
+    private void checkComplete() throws SyntaxException {
+        if (length > maxMessageLength - 2 && !(rechargingAllowed && isRecharging())) {
+            throw SyntaxException.INSTANCE;
+        }
+    }
+}
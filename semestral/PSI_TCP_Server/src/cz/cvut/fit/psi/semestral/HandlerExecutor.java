@@ -0,0 +1,109 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs client handlers in a configurable way, limits number of concurrently running sessions
+ * and number of sessions waiting for a free slot (backlog), anything above is rejected right away
+ */
+public class HandlerExecutor {
+    public enum Mode {
+        THREAD,     //new platform thread per client - original behavior
+        POOL,       //fixed pool of platform threads
+        VIRTUAL     //virtual thread per client, when supported by JVM
+    }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    //Permits for sessions that are running
+    private final Semaphore sessions;
+    //Sessions that are running or waiting in backlog
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final int maxAdmitted;
+
+    /**
+     * @param mode        how handlers are executed
+     * @param maxSessions maximum number of concurrently running sessions
+     * @param backlog     maximum number of sessions waiting for a running session to finish
+     */
+    public HandlerExecutor(Mode mode, int maxSessions, int backlog) {
+        this.mode = mode;
+        this.sessions = new Semaphore(maxSessions);
+        this.maxAdmitted = (int) Math.min(Integer.MAX_VALUE, (long) maxSessions + backlog);
+        this.executor = switch (mode) {
+            case THREAD -> null;
+            case POOL -> Executors.newFixedThreadPool(maxSessions);
+            case VIRTUAL -> newVirtualThreadExecutor();
+        };
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Stops threads of pool once handlers that were already submitted finish, nothing more can be submitted
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Runs handler, unless there are too many sessions already or executor was shut down
+     *
+     * @param handler client handler to be run
+     * @return false if handler was rejected and should be closed by caller
+     */
+    public boolean submit(Runnable handler) {
+        if (admitted.incrementAndGet() > maxAdmitted) {
+            admitted.decrementAndGet();
+            return false;
+        }
+
+        Runnable session = () -> {
+            try {
+                sessions.acquire();
+            } catch (InterruptedException e) {
+                admitted.decrementAndGet();
+                return;
+            }
+            try {
+                handler.run();
+            } finally {
+                sessions.release();
+                admitted.decrementAndGet();
+            }
+        };
+
+        if (mode == Mode.THREAD) {
+            new Thread(session).start();
+        } else {
+            try {
+                executor.execute(session);
+            } catch (RejectedExecutionException e) {
+                //Executor was shut down while the client was being accepted
+                admitted.decrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Virtual threads are final since Java 21, on older JVM falls back to cached pool of platform threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            Log.warn("Virtual threads are not supported by this JVM, using cached thread pool.");
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of non-negative values with log-linear buckets (same idea as HdrHistogram) -
+ * every power of two is split into 8 buckets, so recorded values are kept with at most 12.5% error.
+ * Recording is lock-free and does not allocate, fixed number of buckets covers the whole long range.
+ */
+class Histogram {
+    /* Every power of two is split into 2^SUB_BITS buckets */
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @param quantiles quantiles in range 0-1, in ascending order
+     * @return highest value of bucket, in which each quantile lies - 0 when nothing was recorded
+     */
+    long[] getQuantiles(double... quantiles) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        long[] values = new long[quantiles.length];
+        long seen = 0;
+        int bucket = 0;
+        for (int i = 0; i < quantiles.length && total > 0; i++) {
+            long rank = Math.max(1, (long) Math.ceil(quantiles[i] * total));
+            while (seen + snapshot[bucket] < rank) {
+                seen += snapshot[bucket++];
+            }
+            values[i] = highestValueOf(bucket);
+        }
+        return values;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        //For the highest bucket this overflows to Long.MIN_VALUE, minus one is then Long.MAX_VALUE
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,216 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logging - session threads only put message format and arguments into RingBuffer,
+ * a background thread formats them and writes them in batches. Messages of disabled levels cost only level check.
+ * Arguments are formatted later on the writer thread, so they must not change after logging (strings, numbers),
+ * mutable objects have to be logged via toString() guarded by isEnabled().
+ * Level and output are taken from system properties "log.level" and "log.file", default is INFO to stdout.
+ * Level is then set from Config, output stays for the whole run.
+ */
+public final class Log {
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    /* Number of ring buffer slots, messages are dropped when writer does not keep up */
+    private static final int CAPACITY = 8192;
+    /* Maximum number of messages written at once */
+    private static final int BATCH = 256;
+    /* How long writer sleeps when there is nothing to write */
+    private static final long IDLE_PARK = 1_000_000; //ns
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private static final RingBuffer<Entry> ring = new RingBuffer<>(CAPACITY, Entry::new);
+    private static volatile Level level;
+    private static volatile PrintStream out = System.out;
+
+    static {
+        String name = System.getProperty("log.level", "INFO");
+        try {
+            level = Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            level = Level.INFO;
+            log(Level.WARN, "Unknown log level {}, using INFO.", name, null);
+        }
+        String file = System.getProperty("log.file");
+        if (file != null) {
+            try {
+                out = new PrintStream(new FileOutputStream(file, true), false);
+            } catch (FileNotFoundException e) {
+                System.err.println("Cannot open log file " + file + ", logging to stdout.");
+            }
+        }
+
+        Thread writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.ordinal() >= level.ordinal();
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message, null, null);
+        }
+    }
+
+    public static void debug(String format, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format, arg, null);
+        }
+    }
+
+    public static void debug(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format, arg1, arg2);
+        }
+    }
+
+    public static void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, message, null, null);
+        }
+    }
+
+    public static void info(String format, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format, arg, null);
+        }
+    }
+
+    public static void info(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format, arg1, arg2);
+        }
+    }
+
+    public static void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, message, null, null);
+        }
+    }
+
+    public static void warn(String format, Object arg) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, format, arg, null);
+        }
+    }
+
+    public static void error(String format, Object arg) {
+        if (isEnabled(Level.ERROR)) {
+            log(Level.ERROR, format, arg, null);
+        }
+    }
+
+    /**
+     * Waits until all messages logged so far are written, at most one second
+     */
+    public static void flush() {
+        ring.awaitCommitted(1_000_000_000L);
+    }
+
+    /**
+     * @return number of messages dropped because ring buffer was full
+     */
+    public static long getDropped() {
+        return ring.getDropped();
+    }
+
+    /**
+     * Puts message into ring buffer, drops it when buffer is full
+     */
+    private static void log(Level messageLevel, String format, Object arg1, Object arg2) {
+        Entry entry = ring.claim();
+        if (entry == null) {
+            return;
+        }
+        entry.time = System.currentTimeMillis();
+        entry.level = messageLevel;
+        entry.thread = Thread.currentThread().getName();
+        entry.format = format;
+        entry.arg1 = arg1;
+        entry.arg2 = arg2;
+        ring.publish(entry);
+    }
+
+    private static void writeLoop() {
+        StringBuilder batch = new StringBuilder(16 * 1024);
+        while (true) {
+            int count = 0;
+            Entry entry;
+            while (count < BATCH && (entry = ring.peek()) != null) {
+                format(batch, entry);
+                entry.format = null;
+                entry.arg1 = null;
+                entry.arg2 = null;
+                ring.release(entry);
+                count++;
+            }
+
+            if (count == 0) {
+                LockSupport.parkNanos(IDLE_PARK);
+                continue;
+            }
+            out.append(batch);
+            out.flush();
+            batch.setLength(0);
+            ring.commit();
+        }
+    }
+
+    private static void format(StringBuilder batch, Entry entry) {
+        TIME_FORMAT.formatTo(LocalTime.ofInstant(Instant.ofEpochMilli(entry.time), ZoneId.systemDefault()), batch);
+        batch.append(' ').append(entry.level)
+                .append(" [").append(entry.thread).append("] ");
+        String format = entry.format;
+        int start = appendArgument(batch, format, 0, entry.arg1);
+        start = appendArgument(batch, format, start, entry.arg2);
+        batch.append(format, start, format.length()).append(System.lineSeparator());
+    }
+
+    /**
+     * Appends format up to next "{}" followed by argument
+     *
+     * @return index in format after the placeholder
+     */
+    private static int appendArgument(StringBuilder batch, String format, int start, Object arg) {
+        int placeholder = format.indexOf("{}", start);
+        if (placeholder < 0) {
+            return start;
+        }
+        batch.append(format, start, placeholder).append(arg);
+        return placeholder + 2;
+    }
+
+    /**
+     * Slot of ring buffer, reused for the whole run of server
+     */
+    private static class Entry extends RingBuffer.Slot {
+        private long time;
+        private Level level;
+        private String thread;
+        private String format;
+        private Object arg1;
+        private Object arg2;
+    }
+}
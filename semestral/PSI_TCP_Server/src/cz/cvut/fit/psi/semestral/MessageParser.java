@@ -0,0 +1,112 @@
+package cz.cvut.fit.psi.semestral;
+
+import cz.cvut.fit.psi.semestral.Exceptions.SyntaxException;
+
+/**
+ * Parses client messages directly from decoded bytes, without creating any objects.
+ * Accepts exactly the same messages as regular expressions "^OK -?[0-9]+ -?[0-9]+$" and "^[0-9]+$"
+ * followed by Integer.parseInt - format is checked first, number that doesn't fit into int
+ * is a syntax error as well, checked by MessageParserTest.
+ */
+public final class MessageParser {
+    private MessageParser() {
+    }
+
+    /**
+     * Parses robot position from client message "OK x y"
+     *
+     * @param frame  bytes of message without \a\b
+     * @param length length of message
+     * @return position packed into long, read by getX() and getY()
+     * @throws SyntaxException incorrect client message
+     */
+    public static long parsePosition(byte[] frame, int length) throws SyntaxException {
+        if (length < 3 || frame[0] != 'O' || frame[1] != 'K' || frame[2] != ' ') {
+            throw SyntaxException.INSTANCE;
+        }
+        int xEnd = skipNumber(frame, 3, length);
+        if (xEnd == length || frame[xEnd] != ' ') {
+            throw SyntaxException.INSTANCE;
+        }
+        int yEnd = skipNumber(frame, xEnd + 1, length);
+        if (yEnd != length) {
+            throw SyntaxException.INSTANCE;
+        }
+        return pack(toInt(frame, 3, xEnd), toInt(frame, xEnd + 1, yEnd));
+    }
+
+    /**
+     * Parses client message containing only digits, e.g. key ID or confirmation hash
+     *
+     * @param frame  bytes of message without \a\b
+     * @param length length of message
+     * @return value of number
+     * @throws SyntaxException incorrect client message
+     */
+    public static int parseNumber(byte[] frame, int length) throws SyntaxException {
+        if (skipDigits(frame, 0, length) != length) {
+            throw SyntaxException.INSTANCE;
+        }
+        return toInt(frame, 0, length);
+    }
+
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int getX(long position) {
+        return (int) (position >> 32);
+    }
+
+    public static int getY(long position) {
+        return (int) position;
+    }
+
+    /**
+     * Skips "-?[0-9]+"
+     *
+     * @return index after the number
+     * @throws SyntaxException there is no number at given index
+     */
+    private static int skipNumber(byte[] frame, int start, int length) throws SyntaxException {
+        if (start < length && frame[start] == '-') {
+            start++;
+        }
+        return skipDigits(frame, start, length);
+    }
+
+    /**
+     * Skips "[0-9]+"
+     *
+     * @return index after the last digit
+     * @throws SyntaxException there is no digit at given index
+     */
+    private static int skipDigits(byte[] frame, int start, int length) throws SyntaxException {
+        int i = start;
+        while (i < length && frame[i] >= '0' && frame[i] <= '9') {
+            i++;
+        }
+        if (i == start) {
+            throw SyntaxException.INSTANCE;
+        }
+        return i;
+    }
+
+    /**
+     * Converts already checked "-?[0-9]+" to int
+     *
+     * @throws SyntaxException number does not fit into int
+     */
+    private static int toInt(byte[] frame, int start, int end) throws SyntaxException {
+        boolean negative = frame[start] == '-';
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            value = value * 10 + (frame[i] - '0');
+            if (value > limit) {
+                throw SyntaxException.INSTANCE;
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+}
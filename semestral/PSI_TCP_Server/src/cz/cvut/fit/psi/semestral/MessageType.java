@@ -0,0 +1,84 @@
+package cz.cvut.fit.psi.semestral;
+
+import cz.cvut.fit.psi.semestral.Exceptions.SyntaxException;
+
+/**
+ * Kinds of client messages - maximum length including \a\b, whether robot may send RECHARGING instead
+ * and how the message is parsed. Lengths can be overridden by configuration "message.[type]", see Config,
+ * up to a limit that keeps numbers in message within int.
+ * New kind of message is added here and to the switch in Session, which decides when it is expected.
+ */
+public enum MessageType {
+    NAME(20, Constants.MAX_TEXT_LENGTH, true, MessageType::text),
+    KEY(5, Constants.MAX_NUMBER_LENGTH, true, MessageParser::parseNumber),
+    CONFIRMATION(7, Constants.MAX_NUMBER_LENGTH, true, MessageParser::parseNumber),
+    OK(12, Constants.MAX_POSITION_LENGTH, true, MessageParser::parsePosition),
+    RECHARGING(12, Constants.MAX_TEXT_LENGTH, false, MessageType::text),
+    FULL_POWER(12, Constants.MAX_TEXT_LENGTH, false, MessageType::text),
+    SECRET(100, Constants.MAX_TEXT_LENGTH, true, MessageType::text);
+
+    /**
+     * Checks format of message and returns its value, parsers do not create any objects
+     */
+    @FunctionalInterface
+    interface Parser {
+        /**
+         * @param frame  bytes of message without \a\b
+         * @param length length of message
+         * @return number in message, packed position for OK, 0 for text messages
+         * @throws SyntaxException incorrect client message
+         */
+        long parse(byte[] frame, int length) throws SyntaxException;
+    }
+
+    private final int maxLength;
+    private final int lengthLimit;
+    private final boolean rechargingAllowed;
+    private final Parser parser;
+
+    MessageType(int maxLength, int lengthLimit, boolean rechargingAllowed, Parser parser) {
+        this.maxLength = maxLength;
+        this.lengthLimit = lengthLimit;
+        this.rechargingAllowed = rechargingAllowed;
+        this.parser = parser;
+    }
+
+    /**
+     * @return default maximum length of message including \a\b
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return highest maximum length that can be configured, including \a\b
+     */
+    public int getLengthLimit() {
+        return lengthLimit;
+    }
+
+    /**
+     * @return true if RECHARGING may come instead of this message, it is then allowed to exceed shorter limit
+     */
+    public boolean isRechargingAllowed() {
+        return rechargingAllowed;
+    }
+
+    /**
+     * @return name of message type in configuration, e.g. "full_power"
+     */
+    public String getKey() {
+        return name().toLowerCase();
+    }
+
+    public long parse(byte[] frame, int length) throws SyntaxException {
+        return parser.parse(frame, length);
+    }
+
+    /**
+     * Any bytes except \a\b are valid text, read by FrameDecoder.getString()
+     */
+    private static long text(byte[] frame, int length) {
+        return 0;
+    }
+}
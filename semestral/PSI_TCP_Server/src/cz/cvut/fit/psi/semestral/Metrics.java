@@ -0,0 +1,229 @@
+package cz.cvut.fit.psi.semestral;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide metrics - counters are LongAdders and distributions are Histograms, so sessions can record them
+ * from any thread without locking or allocation. Values are exposed in Prometheus text format
+ * on http://host:port/metrics, when the endpoint is started.
+ */
+public final class Metrics {
+    /**
+     * Reasons of failed sessions, one for each exception that ends the session with error
+     */
+    public enum Failure {
+        LOGIN_FAILED("LoginFailedException"),
+        KEY_OUT_OF_RANGE("KeyOutOfRangeException"),
+        SYNTAX("SyntaxException"),
+        TIMEOUT("TimeoutException"),
+        LOGIC("LogicException"),
+        RECHARGING_LIMIT("RechargingLimitException");
+
+        private final String exception;
+
+        Failure(String exception) {
+            this.exception = exception;
+        }
+    }
+
+    /* Quantiles of histograms that are exposed */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final LongAdder active = new LongAdder();
+    private static final LongAdder accepted = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+    private static final LongAdder rateLimited = new LongAdder();
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder shutdown = new LongAdder();
+    private static final LongAdder[] failed = new LongAdder[Failure.values().length];
+    private static final Histogram moves = new Histogram();
+    private static final Histogram collisions = new Histogram();
+    private static final Histogram rechargingDuration = new Histogram();   //ms
+    private static final Histogram recharges = new Histogram();
+    private static final Histogram readLatency = new Histogram();          //us
+
+    private static HttpServer endpoint;
+
+    static {
+        for (int i = 0; i < failed.length; i++) {
+            failed[i] = new LongAdder();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static void sessionAccepted() {
+        accepted.increment();
+    }
+
+    public static void sessionRejected() {
+        rejected.increment();
+    }
+
+    public static void sessionRateLimited() {
+        rateLimited.increment();
+    }
+
+    public static void sessionStarted() {
+        active.increment();
+    }
+
+    /**
+     * Session ended by logging out the robot - after picking up secret or after too many collisions
+     */
+    public static void sessionCompleted() {
+        active.decrement();
+        completed.increment();
+    }
+
+    /**
+     * Session ended by logging out the robot, because server was shutting down
+     */
+    public static void sessionShutdown() {
+        active.decrement();
+        shutdown.increment();
+    }
+
+    public static void sessionFailed(Failure failure) {
+        active.decrement();
+        failed[failure.ordinal()].increment();
+    }
+
+    /**
+     * Session ended without logging out or error message, e.g. connection closed by client
+     */
+    public static void sessionClosed() {
+        active.decrement();
+    }
+
+    /**
+     * @param commands   number of movement commands sent to robot
+     * @param collisions number of collisions with obstacles
+     */
+    public static void navigationFinished(int commands, int collisions) {
+        moves.record(commands);
+        Metrics.collisions.record(collisions);
+    }
+
+    public static void recharged(long nanos) {
+        rechargingDuration.record(nanos / 1_000_000);
+    }
+
+    /**
+     * @param count number of times robot recharged during session, recorded once session ends
+     */
+    public static void sessionRecharges(int count) {
+        recharges.record(count);
+    }
+
+    /**
+     * @param nanos time from when server started waiting for message until it was received
+     */
+    public static void messageRead(long nanos) {
+        readLatency.record(nanos / 1_000);
+    }
+
+    /**
+     * Starts HTTP endpoint with metrics in background thread
+     *
+     * @param port port of the endpoint
+     * @throws IOException endpoint could not be started
+     */
+    public static synchronized void startEndpoint(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        endpoint = server;
+        Log.info("Metrics available on port: {}", port);
+    }
+
+    /**
+     * Stops HTTP endpoint, if it was started - scrapes in progress are given a second to finish
+     */
+    public static synchronized void stopEndpoint() {
+        if (endpoint != null) {
+            endpoint.stop(1);
+            endpoint = null;
+        }
+    }
+
+    /**
+     * @return session counters on one line, for the log
+     */
+    public static String summary() {
+        long failures = 0;
+        for (LongAdder adder : failed) {
+            failures += adder.sum();
+        }
+        return "accepted=" + accepted.sum() + " rejected=" + (rejected.sum() + rateLimited.sum())
+                + " completed=" + completed.sum() + " failed=" + failures + " shutdown=" + shutdown.sum()
+                + " active=" + active.sum();
+    }
+
+    /**
+     * @return all metrics in Prometheus text format
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(2048);
+        gauge(out, "psi_sessions_active", "Sessions in progress", active.sum());
+        counter(out, "psi_sessions_accepted_total", "Accepted connections", accepted.sum());
+        counter(out, "psi_sessions_rejected_total", "Connections rejected because of too many sessions", rejected.sum());
+        counter(out, "psi_sessions_rate_limited_total", "Connections rejected because of rate limit of their address",
+                rateLimited.sum());
+        counter(out, "psi_sessions_completed_total", "Sessions ended by logging out the robot", completed.sum());
+        counter(out, "psi_sessions_shutdown_total", "Sessions ended by logging out the robot on server shutdown",
+                shutdown.sum());
+
+        header(out, "psi_sessions_failed_total", "Sessions ended by error", "counter");
+        for (Failure failure : Failure.values()) {
+            out.append("psi_sessions_failed_total{exception=\"").append(failure.exception).append("\"} ")
+                    .append(failed[failure.ordinal()].sum()).append('\n');
+        }
+
+        summary(out, "psi_session_moves", "Movement commands sent to robot per session", moves);
+        summary(out, "psi_session_collisions", "Collisions with obstacles per session", collisions);
+        summary(out, "psi_recharging_duration_milliseconds", "Time between RECHARGING and FULL POWER", rechargingDuration);
+        summary(out, "psi_session_recharges", "Recharging cycles per session", recharges);
+        summary(out, "psi_read_latency_microseconds", "Time spent waiting for a client message", readLatency);
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String help, Histogram histogram) {
+        header(out, name, help, "summary");
+        long[] values = histogram.getQuantiles(QUANTILES);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.append(name).append("{quantile=\"").append(QUANTILES[i]).append("\"} ").append(values[i]).append('\n');
+        }
+        out.append(name).append("_sum ").append(histogram.getSum()).append('\n');
+        out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+}
@@ -0,0 +1,103 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Queue of movements stored as ordinals in a byte ring buffer, adding and removing movements does not allocate.
+ * Buffer grows only when more movements are planned at once than ever before.
+ */
+class MovementQueue extends AbstractQueue<Movement> {
+    private static final Movement[] MOVEMENTS = Movement.values();
+
+    //Length is always power of two
+    private byte[] buffer;
+    private int head = 0;
+    private int size = 0;
+
+    MovementQueue() {
+        this(16);
+    }
+
+    /**
+     * @param capacity initial capacity, rounded up to power of two
+     */
+    MovementQueue(int capacity) {
+        buffer = new byte[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1];
+    }
+
+    @Override
+    public boolean offer(Movement movement) {
+        if (size == buffer.length) {
+            grow();
+        }
+        buffer[(head + size) & (buffer.length - 1)] = (byte) movement.ordinal();
+        size++;
+        return true;
+    }
+
+    @Override
+    public Movement poll() {
+        if (size == 0) {
+            return null;
+        }
+        Movement movement = MOVEMENTS[buffer[head]];
+        head = (head + 1) & (buffer.length - 1);
+        size--;
+        return movement;
+    }
+
+    @Override
+    public Movement peek() {
+        return size == 0 ? null : MOVEMENTS[buffer[head]];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Movement> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Movement next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return MOVEMENTS[buffer[(head + index++) & (buffer.length - 1)]];
+            }
+        };
+    }
+
+    /**
+     * Doubles buffer, movements are moved to its beginning
+     */
+    private void grow() {
+        byte[] grown = new byte[buffer.length * 2];
+        int first = Math.min(size, buffer.length - head);
+        System.arraycopy(buffer, head, grown, 0, first);
+        System.arraycopy(buffer, 0, grown, first, size - first);
+        buffer = grown;
+        head = 0;
+    }
+}
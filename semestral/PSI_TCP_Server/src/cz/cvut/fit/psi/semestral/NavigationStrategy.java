@@ -0,0 +1,39 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.Queue;
+
+/**
+ * Plans how robot gets to [0,0], robot keeps position, direction and collisions, strategy decides the movements.
+ * Every robot has its own strategy instance, so strategy can remember what it learned about the field.
+ */
+public interface NavigationStrategy {
+    /**
+     * Plans next movements of robot, called whenever previously planned movements were used up
+     * and robot is not at [0,0] yet
+     *
+     * @param robot     robot with current position and direction
+     * @param movements queue to which planned movements are added
+     */
+    void plan(Robot robot, Queue<Movement> movements);
+
+    /**
+     * Called after every position update of robot, strategy may drop planned movements that are no longer valid
+     *
+     * @param robot     robot with updated position
+     * @param movements movements that were planned and not sent yet
+     */
+    default void onPosition(Robot robot, Queue<Movement> movements) {
+    }
+
+    /**
+     * @param name "simple" or "shortest"
+     * @return new instance of strategy with given name
+     */
+    static NavigationStrategy create(String name) {
+        return switch (name) {
+            case "simple" -> new SimpleNavigation();
+            case "shortest" -> new ShortestPathNavigation();
+            default -> throw new IllegalArgumentException("Unknown navigation strategy: " + name);
+        };
+    }
+}
@@ -0,0 +1,314 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking server mode - a few event loops, every event loop drives its sessions through a Selector
+ * instead of a thread per connection. Connections are accepted in one of two ways:
+ * <ul>
+ *     <li>SHARED - one acceptor thread hands accepted connections round-robin to event loops</li>
+ *     <li>REUSEPORT - every event loop binds its own server socket to the port with SO_REUSEPORT and accepts
+ *     connections itself, kernel spreads connections between them, so each loop owns its sessions end to end</li>
+ * </ul>
+ * REUSEPORT falls back to SHARED when the option is not supported by JDK or operating system.
+ */
+public class NioServer implements RobotServer {
+    public enum Acceptor {
+        SHARED,
+        REUSEPORT
+    }
+
+    /* Resolution of session timeouts, event loop wakes up at least this often */
+    private static final long TICK = 10; //ms
+    /* Number of timer wheel slots, one revolution covers the longest timeout */
+    private static final int TICKS_PER_WHEEL = 1024;
+
+    private final int port;
+    private final AdmissionControl admission;
+    private final Acceptor acceptor;
+    private final EventLoop[] eventLoops;
+
+    //Server socket of shared acceptor
+    private ServerSocketChannel server;
+    private Thread sharedAcceptor;
+    private volatile boolean accepting;
+
+    public NioServer(int port, int eventLoopCount, AdmissionControl admission, Acceptor acceptor) throws IOException {
+        this.port = port;
+        this.admission = admission;
+        if (acceptor == Acceptor.REUSEPORT && !isReusePortSupported()) {
+            Log.warn("SO_REUSEPORT is not supported, using shared acceptor.");
+            acceptor = Acceptor.SHARED;
+        }
+        this.acceptor = acceptor;
+        this.eventLoops = new EventLoop[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i++) {
+            eventLoops[i] = new EventLoop(admission);
+        }
+    }
+
+    /**
+     * Binds port and starts event loops, with shared acceptor also the acceptor thread
+     *
+     * @throws IOException server socket could not be opened
+     */
+    @Override
+    public void start() throws IOException {
+        if (acceptor == Acceptor.REUSEPORT) {
+            //All sockets are bound before any loop starts, so a failed bind does not leave server half started
+            for (EventLoop eventLoop : eventLoops) {
+                ServerSocketChannel server = ServerSocketChannel.open();
+                server.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                server.bind(new InetSocketAddress(port));
+                eventLoop.listen(server);
+            }
+            Log.info("NIO server started on port: {} with {} event loop(s), each with its own acceptor",
+                    port, eventLoops.length);
+        } else {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(port));
+            Log.info("NIO server started on port: {} with {} event loop(s)", port, eventLoops.length);
+        }
+        accepting = true;
+
+        for (int i = 0; i < eventLoops.length; i++) {
+            new Thread(eventLoops[i], "event-loop-" + i).start();
+        }
+        if (acceptor == Acceptor.SHARED) {
+            sharedAcceptor = new Thread(this::acceptClients, "acceptor");
+            sharedAcceptor.start();
+        }
+    }
+
+    @Override
+    public void stopAccepting() {
+        if (!accepting) {
+            return;
+        }
+        accepting = false;
+        if (acceptor == Acceptor.SHARED) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                Log.warn("Cannot close server socket - {}", e.getMessage());
+            }
+            //No connection can be handed over to event loop after it stopped
+            try {
+                sharedAcceptor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.stopAccepting();
+        }
+    }
+
+    @Override
+    public void forceClose() {
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.forceClose();
+        }
+    }
+
+    @Override
+    public int getSessions() {
+        return admission.getConnections();
+    }
+
+    /**
+     * Shared acceptor, hands accepted connections round-robin to event loops
+     */
+    private void acceptClients() {
+        int next = 0;
+        while (accepting) {
+            try {
+                SocketChannel client = server.accept();
+                if (!admit(client, admission)) {
+                    continue;
+                }
+                eventLoops[next].register(client);
+                next = (next + 1) % eventLoops.length;
+            } catch (IOException e) {
+                //Closed server socket is expected once server stopped accepting
+                if (accepting) {
+                    Log.error("Cannot accept client - {}", e);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if server sockets can share port with SO_REUSEPORT
+     */
+    public static boolean isReusePortSupported() {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            return server.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Rejected client is closed before anything is allocated for its session
+     *
+     * @return true if client was admitted
+     */
+    private static boolean admit(SocketChannel client, AdmissionControl admission) throws IOException {
+        InetSocketAddress address = (InetSocketAddress) client.getRemoteAddress();
+        if (address == null || !admission.admit(address.getAddress())) {
+            client.close();
+            return false;
+        }
+        Log.debug("Client accepted: {}", address.getAddress().getHostAddress());
+        Metrics.sessionAccepted();
+        return true;
+    }
+
+    /**
+     * Single thread owning a Selector and all sessions registered to it
+     */
+    private static class EventLoop implements Runnable {
+        private final Selector selector;
+        private final AdmissionControl admission;
+        private final TimerWheel timerWheel = new TimerWheel(TICK, TICKS_PER_WHEEL, System.nanoTime() / 1_000_000);
+        //Channels handed over by acceptor thread, registered by the event loop itself
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        //Own server socket in REUSEPORT mode, null with shared acceptor
+        private ServerSocketChannel server;
+        //Set by other threads, event loop closes its server socket and ends once its sessions are closed
+        private volatile boolean stopping = false;
+        //Set by other threads, event loop logs out all its sessions
+        private volatile boolean closing = false;
+        private boolean loggedOut = false;
+
+        EventLoop(AdmissionControl admission) throws IOException {
+            this.selector = Selector.open();
+            this.admission = admission;
+        }
+
+        /**
+         * Makes event loop accept connections from its own server socket, must be called before loop is started
+         */
+        void listen(ServerSocketChannel server) throws IOException {
+            this.server = server;
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        }
+
+        void register(SocketChannel client) {
+            pending.add(client);
+            selector.wakeup();
+        }
+
+        void stopAccepting() {
+            stopping = true;
+            selector.wakeup();
+        }
+
+        void forceClose() {
+            closing = true;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (!stopping || !selector.keys().isEmpty() || !pending.isEmpty()) {
+                try {
+                    selector.select(TICK);
+                    registerPending();
+                    if (stopping && server != null) {
+                        server.close();
+                        server = null;
+                    }
+                    if (closing && !loggedOut) {
+                        logOutSessions();
+                        loggedOut = true;
+                    }
+
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        if (key.isValid() && key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        NioSession session = (NioSession) key.attachment();
+                        //Bug in one session must not stop the other sessions of this loop
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                session.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                session.onWritable();
+                            }
+                        } catch (RuntimeException e) {
+                            Log.error("Session failed, closing connection - {}", e);
+                            session.abort();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+
+                    timerWheel.advance(System.nanoTime() / 1_000_000);
+                } catch (IOException | RuntimeException e) {
+                    Log.error("Event loop failed - {}", e);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                Log.warn("Cannot close selector - {}", e.getMessage());
+            }
+        }
+
+        private void logOutSessions() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.isValid() && key.attachment() instanceof NioSession) {
+                    ((NioSession) key.attachment()).shutdown();
+                }
+            }
+        }
+
+        /**
+         * Accepts all waiting connections from own server socket, sessions are registered right away
+         */
+        private void accept() throws IOException {
+            SocketChannel client;
+            while ((client = server.accept()) != null) {
+                if (admit(client, admission)) {
+                    open(client);
+                }
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel client;
+            while ((client = pending.poll()) != null) {
+                open(client);
+            }
+        }
+
+        private void open(SocketChannel client) {
+            try {
+                client.configureBlocking(false);
+                SelectionKey key = client.register(selector, SelectionKey.OP_READ);
+                key.attach(new NioSession(client, key, timerWheel, admission));
+            } catch (IOException e) {
+                Log.warn("Cannot register client - {}", e.getMessage());
+                admission.release();
+                try {
+                    client.close();
+                } catch (IOException closeFailed) {
+                    Log.warn("Cannot close connection - channel.close() failed.");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Drives Session for the non-blocking server - feeds it whatever the selector reports as readable,
+ * writes its output when the channel accepts it and closes the connection on timeout or once session is finished
+ */
+class NioSession {
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer input = ByteBuffer.allocate(Config.get().inputBuffer);
+    //Capture session id, Capture.NONE when capture is disabled
+    private final int capture = Capture.open();
+    private final OutputBuffer output = new OutputBuffer(Config.get().outputBuffer, capture);
+    private final Session session = new Session(output);
+
+    private final TimerWheel timerWheel;
+    private final TimerWheel.Timeout timeout = new TimerWheel.Timeout(this::onTimeout);
+    private final AdmissionControl admission;
+
+    NioSession(SocketChannel channel, SelectionKey key, TimerWheel timerWheel, AdmissionControl admission) {
+        this.channel = channel;
+        this.key = key;
+        this.timerWheel = timerWheel;
+        this.admission = admission;
+        timerWheel.schedule(timeout, System.nanoTime() / 1_000_000 + session.getTimeout());
+    }
+
+    private void onTimeout() {
+        Capture.event(capture, Capture.TIMEOUT);
+        session.onTimeout();
+        closeConnection();
+    }
+
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(input);
+        } catch (IOException e) {
+            Capture.event(capture, Capture.CONNECTION_LOST);
+            session.onConnectionLost();
+            closeConnection();
+            return;
+        }
+
+        if (read == -1) {
+            Capture.event(capture, Capture.END_OF_STREAM);
+            session.onEndOfStream();
+        } else {
+            Capture.inbound(capture, input.array(), 0, read);
+            input.flip();
+            session.onInput(input);
+            //Decoder consumes every received byte, unless session finished before the end of input
+            input.clear();
+            timerWheel.schedule(timeout, System.nanoTime() / 1_000_000 + session.getTimeout());
+        }
+        flush();
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    /**
+     * Server shuts down - robot is logged out and connection closed once SERVER_LOGOUT is written
+     */
+    void shutdown() {
+        Capture.event(capture, Capture.SHUTDOWN);
+        session.onShutdown();
+        flush();
+    }
+
+    /**
+     * Session failed unexpectedly - connection is closed without response
+     */
+    void abort() {
+        Capture.event(capture, Capture.CONNECTION_LOST);
+        session.onConnectionLost();
+        closeConnection();
+    }
+
+    /**
+     * Writes as much of queued output as the channel accepts, waits for OP_WRITE with the rest
+     */
+    private void flush() {
+        boolean flushed;
+        try {
+            flushed = output.flush(channel);
+        } catch (IOException e) {
+            Capture.event(capture, Capture.CONNECTION_LOST);
+            session.onConnectionLost();
+            closeConnection();
+            return;
+        }
+
+        if (!flushed) {
+            key.interestOps(SelectionKey.OP_WRITE);
+        } else if (session.isFinished()) {
+            closeConnection();
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void closeConnection() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        Capture.event(capture, Capture.CLOSE);
+        admission.release();
+        timerWheel.cancel(timeout);
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.warn("Cannot close connection - channel.close() failed.");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package cz.cvut.fit.psi.semestral;
+
+/**
+ * Server-wide memory of obstacles, shared by sessions that assume all robots are on the same field.
+ * Maps packed coordinates to confidence (number of collisions seen) and time of the last collision.
+ * Field is split into square regions, every region is hashed to one stripe with its own lock and to one block
+ * of slots in it, obstacles of the region are kept only in that block. Query of an area then reads only blocks
+ * of regions overlapping it, not the whole table.
+ * Entries older than TTL are ignored, when all slots of the block are taken, the oldest one is replaced.
+ * <p>
+ * Disabled by default, as tester gives every robot a different field - enabled by Server when configured
+ * "obstacle.cache=true", "obstacle.cache.size" and "obstacle.cache.ttl" (ms) set its capacity and TTL.
+ */
+public class ObstacleCache {
+    private static volatile ObstacleCache shared;
+
+    private static final int STRIPES = 16;
+    /* Regions are 8x8 fields, coordinates are shifted right to get the region */
+    private static final int REGION_SHIFT = 3;
+    /* Slots of one block, maximum number of obstacles remembered in a region */
+    private static final int BLOCK = 8;
+    /* [0,0] is never an obstacle, so its packed coordinates mark an empty slot */
+    private static final long EMPTY = 0;
+    private static final int MAX_CONFIDENCE = 255;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    //Number of blocks in every stripe, power of two
+    private final int blocks;
+    private final long ttl;
+
+    private static class Stripe {
+        final long[] keys;
+        final long[] seen;
+        final int[] confidence;
+
+        Stripe(int capacity) {
+            keys = new long[capacity];
+            seen = new long[capacity];
+            confidence = new int[capacity];
+        }
+    }
+
+    /**
+     * @param capacity maximum number of obstacles
+     * @param ttl      how long obstacle is remembered after its last collision, in ms
+     */
+    public ObstacleCache(int capacity, long ttl) {
+        this.ttl = ttl;
+        //Every stripe has power of two blocks, at least one
+        int perStripe = Math.max(1, (capacity + STRIPES * BLOCK - 1) / (STRIPES * BLOCK));
+        blocks = perStripe == 1 ? 1 : Integer.highestOneBit(perStripe - 1) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(blocks * BLOCK);
+        }
+    }
+
+    /**
+     * @return cache shared by all sessions, null when disabled
+     */
+    public static ObstacleCache shared() {
+        return shared;
+    }
+
+    /**
+     * Creates cache shared by sessions started from now on
+     *
+     * @param capacity maximum number of obstacles
+     * @param ttl      how long obstacle is remembered after its last collision, in ms
+     */
+    public static void enableShared(int capacity, long ttl) {
+        shared = new ObstacleCache(capacity, ttl);
+    }
+
+    /**
+     * Records collision with obstacle, increases its confidence
+     *
+     * @param obstacle packed coordinates, see MessageParser.pack
+     * @param now      current time in ms
+     */
+    public void add(long obstacle, long now) {
+        if (obstacle == EMPTY) {
+            return;
+        }
+        int hash = regionHash(MessageParser.getX(obstacle) >> REGION_SHIFT, MessageParser.getY(obstacle) >> REGION_SHIFT);
+        Stripe stripe = stripeOf(hash);
+        int start = blockOf(hash);
+        synchronized (stripe) {
+            int victim = start;
+            for (int slot = start; slot < start + BLOCK; slot++) {
+                if (stripe.keys[slot] == obstacle) {
+                    if (isLive(stripe, slot, now)) {
+                        stripe.confidence[slot] = Math.min(stripe.confidence[slot] + 1, MAX_CONFIDENCE);
+                    } else {
+                        stripe.confidence[slot] = 1;
+                    }
+                    stripe.seen[slot] = now;
+                    return;
+                }
+                if (stripe.keys[slot] == EMPTY) {
+                    victim = slot;
+                    break;
+                }
+                //Expired or the oldest entry is replaced, when key is not in the block
+                if (stripe.seen[slot] < stripe.seen[victim]) {
+                    victim = slot;
+                }
+            }
+            stripe.keys[victim] = obstacle;
+            stripe.seen[victim] = now;
+            stripe.confidence[victim] = 1;
+        }
+    }
+
+    /**
+     * Forgets obstacle, called when robot stood on the field - obstacle is not there anymore
+     *
+     * @param field packed coordinates, see MessageParser.pack
+     */
+    public void remove(long field) {
+        int hash = regionHash(MessageParser.getX(field) >> REGION_SHIFT, MessageParser.getY(field) >> REGION_SHIFT);
+        Stripe stripe = stripeOf(hash);
+        int start = blockOf(hash);
+        synchronized (stripe) {
+            for (int slot = start; slot < start + BLOCK; slot++) {
+                if (stripe.keys[slot] == field) {
+                    stripe.confidence[slot] = 0;
+                    stripe.seen[slot] = 0;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies obstacles that are not expired and lie in given area, reads only blocks of regions overlapping it
+     *
+     * @param minX  left border of area, inclusive
+     * @param maxX  right border of area, inclusive
+     * @param minY  bottom border of area, inclusive
+     * @param maxY  top border of area, inclusive
+     * @param now   current time in ms
+     * @param found packed coordinates of obstacles are added here
+     * @return number of obstacles added, array is filled only up to its length
+     */
+    public int collect(int minX, int maxX, int minY, int maxY, long now, long[] found) {
+        int count = 0;
+        for (int regionY = minY >> REGION_SHIFT; regionY <= maxY >> REGION_SHIFT; regionY++) {
+            for (int regionX = minX >> REGION_SHIFT; regionX <= maxX >> REGION_SHIFT; regionX++) {
+                if (count == found.length) {
+                    return count;
+                }
+                int hash = regionHash(regionX, regionY);
+                Stripe stripe = stripeOf(hash);
+                int start = blockOf(hash);
+                synchronized (stripe) {
+                    for (int slot = start; slot < start + BLOCK && count < found.length; slot++) {
+                        long key = stripe.keys[slot];
+                        int x = MessageParser.getX(key);
+                        int y = MessageParser.getY(key);
+                        //Block is shared with other regions of the same hash, they are collected on their own
+                        if (key != EMPTY && isLive(stripe, slot, now) && x >> REGION_SHIFT == regionX
+                                && y >> REGION_SHIFT == regionY && x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                            found[count++] = key;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean isLive(Stripe stripe, int slot, long now) {
+        return stripe.confidence[slot] > 0 && now - stripe.seen[slot] < ttl;
+    }
+
+    private Stripe stripeOf(int hash) {
+        return stripes[(hash >>> 28) & (STRIPES - 1)];
+    }
+
+    /**
+     * @return index of the first slot of region's block in its stripe
+     */
+    private int blockOf(int hash) {
+        return (hash & (blocks - 1)) * BLOCK;
+    }
+
+    /**
+     * Mixes bits of both region coordinates, neighbouring regions end up in different blocks
+     */
+    private static int regionHash(int regionX, int regionY) {
+        long h = MessageParser.pack(regionX, regionY) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
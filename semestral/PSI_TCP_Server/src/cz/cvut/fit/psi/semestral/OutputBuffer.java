@@ -0,0 +1,96 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Per-connection buffer of server messages waiting to be sent. Messages are only queued,
+ * they are written together once server expects a reply from client or closes the connection,
+ * so e.g. "200 OK" followed by first "102 MOVE" or error followed by close takes a single write.
+ */
+public class OutputBuffer {
+    //Kept in write mode, everything between 0 and position is waiting to be sent
+    private final ByteBuffer buffer;
+    //Capture session id, written bytes are recorded unless it is Capture.NONE
+    private final int capture;
+    private long bytesWritten = 0;
+    private long flushes = 0;
+
+    public OutputBuffer(int capacity) {
+        this(capacity, Capture.NONE);
+    }
+
+    /**
+     * @param capacity maximum number of bytes waiting to be sent
+     * @param capture  session id from Capture.open()
+     */
+    public OutputBuffer(int capacity, int capture) {
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.capture = capture;
+    }
+
+    /**
+     * Queues pre-encoded server message, including \a\b
+     *
+     * @param response server message
+     */
+    public void put(Response response) {
+        ByteBuffer bytes = response.getBytes();
+        int position = buffer.position();
+        buffer.put(position, bytes, 0, bytes.capacity());
+        buffer.position(position + bytes.capacity());
+    }
+
+    /**
+     * Queues non-negative number as ASCII digits followed by \a\b, without creating a string
+     *
+     * @param number number to be sent, e.g. server confirmation hash
+     */
+    public void putNumber(int number) {
+        int digits = 1;
+        for (int rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int position = buffer.position();
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer.put(i, (byte) ('0' + number % 10));
+            number /= 10;
+        }
+        buffer.position(position + digits);
+        buffer.put((byte) '\u0007').put((byte) '\b');
+    }
+
+    /**
+     * Writes queued messages to channel, non-blocking channel may accept only part of them
+     *
+     * @param channel channel of client connection
+     * @return true if nothing is left to be written
+     * @throws IOException write failed
+     */
+    public boolean flush(WritableByteChannel channel) throws IOException {
+        if (buffer.position() == 0) {
+            return true;
+        }
+        buffer.flip();
+        int written = channel.write(buffer);
+        Capture.outbound(capture, buffer, 0, written);
+        buffer.compact();
+
+        bytesWritten += written;
+        flushes++;
+        return buffer.position() == 0;
+    }
+
+    public boolean hasPending() {
+        return buffer.position() > 0;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+}
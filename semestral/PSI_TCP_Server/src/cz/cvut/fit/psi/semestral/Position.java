@@ -1,8 +1,9 @@
 package cz.cvut.fit.psi.semestral;
 
-import java.util.Objects;
-
-public class Position {
+/**
+ * Immutable position on the field, can be used as a key in maps and sets
+ */
+public final class Position {
     private final int x;
     private final int y;
 
@@ -15,9 +16,9 @@ public class Position {
         y = Integer.MIN_VALUE;
     }
 
-    public Position(Integer lastX, Integer lastY) {
-        this.x = lastX;
-        this.y = lastY;
+    public Position(int x, int y) {
+        this.x = x;
+        this.y = y;
     }
 
     public int getX() {
@@ -38,6 +39,11 @@ public class Position {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Position position = (Position) o;
-        return Objects.equals(getX(), position.getX()) && Objects.equals(getY(), position.getY());
+        return x == position.x && y == position.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
     }
 }
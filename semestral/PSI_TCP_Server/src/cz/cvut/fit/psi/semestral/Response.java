@@ -0,0 +1,42 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed server messages, encoded once together with \a\b into read-only buffers shared by all connections
+ */
+public enum Response {
+    MOVE(Constants.SERVER_MOVE),
+    TURN_LEFT(Constants.SERVER_TURN_LEFT),
+    TURN_RIGHT(Constants.SERVER_TURN_RIGHT),
+    PICK_UP(Constants.SERVER_PICK_UP),
+    LOGOUT(Constants.SERVER_LOGOUT),
+    KEY_REQUEST(Constants.SERVER_KEY_REQUEST),
+    OK(Constants.SERVER_OK),
+    LOGIN_FAILED(Constants.SERVER_LOGIN_FAILED),
+    SYNTAX_ERROR(Constants.SERVER_SYNTAX_ERROR),
+    LOGIC_ERROR(Constants.SERVER_LOGIC_ERROR),
+    KEY_OUT_OF_RANGE_ERROR(Constants.SERVER_KEY_OUT_OF_RANGE_ERROR);
+
+    private final String message;
+    //Only ever read with absolute get, so position of shared buffer never changes
+    private final ByteBuffer bytes;
+
+    Response(String message) {
+        this.message = message;
+        this.bytes = ByteBuffer.wrap((message + Constants.MSG_ENDING).getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return encoded message including \a\b, read-only
+     */
+    ByteBuffer getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
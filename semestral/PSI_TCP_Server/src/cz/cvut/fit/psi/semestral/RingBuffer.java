@@ -0,0 +1,132 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded lock-free ring buffer (MPMC queue by D. Vyukov) of preallocated slots, used by Log and Capture.
+ * Any thread claims a slot, fills it and publishes it, one background thread takes published slots in order.
+ * When the buffer is full, claim fails and is counted as dropped, producers never wait for the consumer.
+ * <p>
+ * Consumer releases every slot as soon as it copied its content and commits once the content of released slots
+ * is written, flushing threads wait for the commit.
+ */
+final class RingBuffer<E extends RingBuffer.Slot> {
+    /* How long flushing thread sleeps between checks */
+    private static final long FLUSH_PARK = 1_000_000; //ns
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    //Only accessed by consumer thread
+    private long next = 0;
+    //Position up to which slots are written, read by flushing threads
+    private volatile long committed = 0;
+
+    /**
+     * Slot of ring buffer, reused for the whole run, subclasses add fields for content
+     */
+    abstract static class Slot {
+        //Equal to position + 1 once slot is published, position + capacity once slot was released
+        private volatile long sequence;
+        private long position;
+    }
+
+    /**
+     * @param capacity number of slots, power of two
+     * @param factory  creates empty slots
+     */
+    RingBuffer(int capacity, Supplier<E> factory) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be power of two: " + capacity);
+        }
+        slots = new Slot[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            Slot slot = factory.get();
+            slot.sequence = i;
+            slots[i] = slot;
+        }
+    }
+
+    /**
+     * Claims a slot to be filled by calling thread and passed to publish()
+     *
+     * @return slot, null when buffer is full
+     */
+    @SuppressWarnings("unchecked")
+    E claim() {
+        long position = tail.get();
+        while (true) {
+            Slot slot = slots[(int) (position & mask)];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slot.position = position;
+                    return (E) slot;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.incrementAndGet();
+                return null;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Hands filled slot over to consumer
+     */
+    void publish(Slot slot) {
+        slot.sequence = slot.position + 1;
+    }
+
+    /**
+     * Consumer only - next slot in order, it stays published until release()
+     *
+     * @return slot, null when it was not published yet
+     */
+    @SuppressWarnings("unchecked")
+    E peek() {
+        Slot slot = slots[(int) (next & mask)];
+        return slot.sequence == next + 1 ? (E) slot : null;
+    }
+
+    /**
+     * Consumer only - frees slot returned by peek() for the next round of producers
+     */
+    void release(Slot slot) {
+        slot.sequence = next + slots.length;
+        next++;
+    }
+
+    /**
+     * Consumer only - marks all released slots as written
+     */
+    void commit() {
+        committed = next;
+    }
+
+    /**
+     * Waits until all slots claimed so far are committed
+     *
+     * @param timeout maximum time to wait in ns
+     */
+    void awaitCommitted(long timeout) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + timeout;
+        while (committed < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(FLUSH_PARK);
+        }
+    }
+
+    /**
+     * @return number of claims that failed because buffer was full
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,76 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.IOException;
+
+/**
+ * Lifecycle of server - start, stop accepting new robots, let sessions in progress finish (drain)
+ * and log out robots of sessions that did not finish in time (force close)
+ */
+public interface RobotServer {
+    /* How long force closed sessions have to send SERVER_LOGOUT */
+    long FORCE_CLOSE_TIMEOUT = 1000; //ms
+    /* How often drain checks for remaining sessions */
+    long DRAIN_CHECK_INTERVAL = 50; //ms
+
+    /**
+     * Binds port and starts accepting clients in background threads
+     *
+     * @throws IOException server socket could not be opened
+     */
+    void start() throws IOException;
+
+    /**
+     * Closes server socket, sessions in progress continue
+     */
+    void stopAccepting();
+
+    /**
+     * Sends SERVER_LOGOUT to every session in progress and closes its connection
+     */
+    void forceClose();
+
+    /**
+     * @return number of open connections
+     */
+    int getSessions();
+
+    /**
+     * Waits until all sessions finish
+     *
+     * @param timeout maximum time to wait in ms
+     * @return true if there are no sessions left
+     */
+    default boolean drain(long timeout) {
+        long deadline = System.nanoTime() / 1_000_000 + timeout;
+        while (getSessions() > 0) {
+            if (System.nanoTime() / 1_000_000 >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(DRAIN_CHECK_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting, drains sessions and force closes those that did not finish in time
+     *
+     * @param drainTimeout how long sessions in progress can continue in ms
+     */
+    default void shutdown(long drainTimeout) {
+        Log.info("Shutting down - waiting for {} session(s) to finish.", getSessions());
+        stopAccepting();
+        if (drain(drainTimeout)) {
+            return;
+        }
+        Log.info("Logging out {} session(s) that did not finish in time.", getSessions());
+        forceClose();
+        if (!drain(FORCE_CLOSE_TIMEOUT)) {
+            Log.warn("{} session(s) were not closed.", getSessions());
+        }
+    }
+}
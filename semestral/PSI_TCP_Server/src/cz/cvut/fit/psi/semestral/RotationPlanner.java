@@ -0,0 +1,77 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.Queue;
+
+/**
+ * Rotations of robot from precomputed tables indexed by Direction.ordinal(), instead of looking them up in maps
+ */
+final class RotationPlanner {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /* Direction after turning LEFT / RIGHT, UNDEFINED stays UNDEFINED */
+    private static final int[] TURN_LEFT = {
+            Direction.LEFT.ordinal(),       //UP
+            Direction.DOWN.ordinal(),       //LEFT
+            Direction.RIGHT.ordinal(),      //DOWN
+            Direction.UP.ordinal(),         //RIGHT
+            Direction.UNDEFINED.ordinal()   //UNDEFINED
+    };
+    private static final int[] TURN_RIGHT = {
+            Direction.RIGHT.ordinal(),      //UP
+            Direction.UP.ordinal(),         //LEFT
+            Direction.LEFT.ordinal(),       //DOWN
+            Direction.DOWN.ordinal(),       //RIGHT
+            Direction.UNDEFINED.ordinal()   //UNDEFINED
+    };
+
+    /* Rotations needed to face [to] from [from] - positive number of LEFT turns, negative number of RIGHT turns */
+    private static final int[][] ROTATIONS = new int[DIRECTIONS.length][DIRECTIONS.length];
+
+    static {
+        for (Direction from : DIRECTIONS) {
+            if (from == Direction.UNDEFINED) {
+                continue;
+            }
+            int left = from.ordinal();
+            int right = from.ordinal();
+            for (int turns = 0; turns <= 2; turns++) {
+                //Turning around is done by two LEFT turns, the same number as two RIGHT turns
+                ROTATIONS[from.ordinal()][right] = -turns;
+                ROTATIONS[from.ordinal()][left] = turns;
+                left = TURN_LEFT[left];
+                right = TURN_RIGHT[right];
+            }
+        }
+    }
+
+    private RotationPlanner() {
+    }
+
+    /**
+     * @return direction after robot made given movement, only rotations change direction
+     */
+    static Direction turn(Direction direction, Movement movement) {
+        return switch (movement) {
+            case ROTATE_LEFT -> DIRECTIONS[TURN_LEFT[direction.ordinal()]];
+            case ROTATE_RIGHT -> DIRECTIONS[TURN_RIGHT[direction.ordinal()]];
+            default -> direction;
+        };
+    }
+
+    /**
+     * Adds all rotations needed to turn robot from one direction to another, nothing when it faces it already
+     *
+     * @param from      current direction of robot, not UNDEFINED
+     * @param to        wanted direction, not UNDEFINED
+     * @param movements queue to which rotations are added
+     */
+    static void addRotations(Direction from, Direction to, Queue<Movement> movements) {
+        int turns = ROTATIONS[from.ordinal()][to.ordinal()];
+        for (int i = 0; i < turns; i++) {
+            movements.add(Movement.ROTATE_LEFT);
+        }
+        for (int i = 0; i > turns; i--) {
+            movements.add(Movement.ROTATE_RIGHT);
+        }
+    }
+}
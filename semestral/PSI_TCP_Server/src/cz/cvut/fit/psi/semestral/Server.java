@@ -1,40 +1,103 @@
 package cz.cvut.fit.psi.semestral;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Socket programming idea is taken from: https://www.geeksforgeeks.org/socket-programming-in-java/
+ * Run with arguments "[thread|pool|virtual] [max sessions] [backlog]" to choose how handlers are executed,
+ * or with "nio [event loops] [shared|reuseport]" to use non-blocking server instead of thread per connection.
+ * Any other configuration is given by "--key=value" arguments or by properties file "--config=file", see Config.
+ * Metrics endpoint is started when "metrics.port" is set, sessions are captured for Replay into file
+ * given by "capture.file".
+ * On SIGTERM server stops accepting, sessions in progress have "shutdown.drain" ms to finish,
+ * robots that are still connected after that are logged out.
  */
 public class Server {
     public static void main(String[] args) {
-        ServerSocket server = null;
-
-        //Starts server and waits for a connection
+        Config config;
         try {
-            server = new ServerSocket(Constants.PORT);
-            System.out.println("Server started on port: " + Constants.PORT);
-
-            System.out.println("Waiting for a client ...");
-
-            while (true) {
-                Socket client = server.accept();
-                System.out.println("Client accepted: " + client.getInetAddress().getHostAddress());
+            config = Config.load(toFlags(args));
+        } catch (IOException | IllegalArgumentException e) {
+            Log.error("Invalid configuration - {}", e.getMessage());
+            Log.flush();
+            return;
+        }
 
-                Handler handler = new Handler(client);
-                new Thread(handler).start();
+        if (config.metricsPort != 0) {
+            try {
+                Metrics.startEndpoint(config.metricsPort);
+            } catch (IOException e) {
+                Log.warn("Cannot start metrics endpoint - {}", e.getMessage());
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-
-        if (server != null) {
+        if (config.captureFile != null) {
             try {
-                server.close();
+                Capture.start(Path.of(config.captureFile));
             } catch (IOException e) {
-                e.printStackTrace();
+                Log.warn("Cannot open capture file - {}", e.getMessage());
+            }
+        }
+        if (config.obstacleCache) {
+            ObstacleCache.enableShared(config.obstacleCacheSize, config.obstacleCacheTtl);
+        }
+
+        RobotServer server;
+        try {
+            server = create(config, AdmissionControl.fromConfig(config));
+            server.start();
+        } catch (IOException e) {
+            Log.error("Cannot start server - {}", e.getMessage());
+            Metrics.stopEndpoint();
+            Log.flush();
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            //Drain timeout can be changed by reload while server runs
+            server.shutdown(Config.get().shutdownDrain);
+            Log.info("Final metrics: {}", Metrics.summary());
+            Metrics.stopEndpoint();
+            Capture.flush();
+            if (Capture.getDropped() > 0) {
+                Log.warn("Capture dropped {} records, affected sessions cannot be replayed exactly.", Capture.getDropped());
             }
+            Log.flush();
+        }, "shutdown"));
+    }
+
+    /**
+     * Converts positional arguments to "--key=value" flags, explicit flags are kept and override them
+     */
+    private static List<String> toFlags(String[] args) {
+        List<String> positional = new ArrayList<>();
+        List<String> flags = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? flags : positional).add(arg);
         }
+
+        List<String> converted = new ArrayList<>();
+        String[] keys = positional.isEmpty() || !positional.get(0).equals("nio")
+                ? new String[]{"mode", "threads", "backlog"}
+                : new String[]{"mode", "threads", "acceptor"};
+        for (int i = 0; i < positional.size() && i < keys.length; i++) {
+            converted.add("--" + keys[i] + "=" + positional.get(i));
+        }
+        converted.addAll(flags);
+        return converted;
+    }
+
+    private static RobotServer create(Config config, AdmissionControl admission) throws IOException {
+        if (config.mode.equals("nio")) {
+            int eventLoops = config.threads > 0 ? config.threads : Runtime.getRuntime().availableProcessors();
+            NioServer.Acceptor acceptor = NioServer.Acceptor.valueOf(config.acceptor.toUpperCase());
+            return new NioServer(config.port, eventLoops, admission, acceptor);
+        }
+
+        HandlerExecutor.Mode mode = HandlerExecutor.Mode.valueOf(config.mode.toUpperCase());
+        int maxSessions = config.threads > 0 ? config.threads : mode == HandlerExecutor.Mode.THREAD ? Integer.MAX_VALUE : 1000;
+        return new ThreadServer(config.port, new HandlerExecutor(mode, maxSessions, config.backlog), admission);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,352 @@
+package cz.cvut.fit.psi.semestral;
+
+import cz.cvut.fit.psi.semestral.Exceptions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+
+/**
+ * Protocol of one robot session as a state machine without any I/O - decodes client messages from given bytes
+ * and queues server messages into output buffer. Whoever drives the session (blocking Handler, NioSession, tests)
+ * reads from the client, writes the output, watches timeouts and closes the connection once session is finished.
+ * <p>
+ * Flow is authentication (AWAIT_NAME, AWAIT_KEY, AWAIT_CONFIRM), NAVIGATING robot to [0,0] and AWAIT_SECRET,
+ * RECHARGING may come in any state, after FULL POWER the session continues in the state before recharging.
+ * Recharging is a state, not a nested read, so any number of cycles runs in constant stack space.
+ */
+public class Session {
+    public enum State {
+        AWAIT_NAME, AWAIT_KEY, AWAIT_CONFIRM, NAVIGATING, AWAIT_SECRET, RECHARGING
+    }
+
+    //Snapshot taken when session started, reloaded configuration applies to new sessions only
+    private final Config config = Config.get();
+    private final OutputBuffer output;
+    private final FrameDecoder decoder = new FrameDecoder(config.longestMessage);
+    private final Authenticator authenticator = new Authenticator(config.keys);
+
+    private State state = State.AWAIT_NAME;
+    //State to continue with after robot sends FULL POWER
+    private State stateBeforeRecharging;
+    //Last response was queued, connection should be closed once output is written
+    private boolean finished = false;
+    private boolean authenticated = false;
+    //Monotonic time in ms when unauthenticated session is closed, no matter how many messages robot sends
+    private final long loginDeadline = System.nanoTime() / 1_000_000 + config.loginDeadline;
+
+    private String robotName;
+    private Robot robot;
+    //Number of the first two moves used to establish position
+    private int firstMoves;
+    private Movement lastMovement;
+    private Queue<Movement> steps;
+    //Number of movement commands sent to robot, for metrics
+    private int commands;
+    //Since when the server waits for next message, for metrics
+    private long waitingSince = System.nanoTime();
+    private long rechargingSince;
+    private int recharges;
+
+    /**
+     * @param output buffer into which server messages are queued
+     */
+    public Session(OutputBuffer output) {
+        this.output = output;
+        Metrics.sessionStarted();
+        Log.debug("--------------------Authentication--------------------");
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return true when no more client messages are processed and connection should be closed
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return how long to wait for next client message in ms, longer while robot is recharging,
+     * never longer than remaining time to log in
+     */
+    public int getTimeout() {
+        int timeout = state == State.RECHARGING ? config.rechargingTimeout : config.timeout;
+        if (authenticated) {
+            return timeout;
+        }
+        //Socket timeout 0 would mean no timeout at all
+        return (int) Math.max(1, Math.min(timeout, loginDeadline - System.nanoTime() / 1_000_000));
+    }
+
+    /**
+     * Processes all complete messages in input, incomplete message is kept in decoder until more bytes come
+     *
+     * @param input bytes received from client, in read mode
+     */
+    public void onInput(ByteBuffer input) {
+        //Robot that keeps sending RECHARGING or trickles bytes must not stay unauthenticated forever
+        if (!authenticated && System.nanoTime() / 1_000_000 >= loginDeadline) {
+            onTimeout();
+            return;
+        }
+        try {
+            while (!finished) {
+                MessageType type = expectedType();
+                decoder.expect(config.getMaxLength(type), type.isRechargingAllowed());
+                if (!decoder.decode(input)) {
+                    return;
+                }
+                long now = System.nanoTime();
+                Metrics.messageRead(now - waitingSince);
+                waitingSince = now;
+                onMessage(type);
+            }
+        } catch (ProtocolException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Client closed connection before the session finished - incomplete message
+     */
+    public void onEndOfStream() {
+        if (finished) {
+            return;
+        }
+        fail(state == State.RECHARGING ? LogicException.INSTANCE : SyntaxException.INSTANCE);
+    }
+
+    /**
+     * Client did not send message in time given by getTimeout(), connection is closed without response
+     */
+    public void onTimeout() {
+        if (finished) {
+            return;
+        }
+        if (!authenticated && System.nanoTime() / 1_000_000 >= loginDeadline) {
+            Log.info("Robot did not log in in time.");
+        }
+        fail(TimeoutException.INSTANCE);
+    }
+
+    /**
+     * Connection failed, e.g. was reset by client
+     */
+    public void onConnectionLost() {
+        if (!finished) {
+            finish();
+            Metrics.sessionClosed();
+            Log.info("Connection lost.");
+        }
+    }
+
+    /**
+     * Server is shutting down - robot is logged out, unless session already finished
+     */
+    public void onShutdown() {
+        if (!finished) {
+            Log.info("Server is shutting down, logging out robot.");
+            output.put(Response.LOGOUT);
+            finish();
+            Metrics.sessionShutdown();
+        }
+    }
+
+    /**
+     * @return kind of message robot should send in current state
+     */
+    private MessageType expectedType() {
+        return switch (state) {
+            case AWAIT_NAME -> MessageType.NAME;
+            case AWAIT_KEY -> MessageType.KEY;
+            case AWAIT_CONFIRM -> MessageType.CONFIRMATION;
+            case NAVIGATING -> MessageType.OK;
+            case AWAIT_SECRET -> MessageType.SECRET;
+            case RECHARGING -> MessageType.FULL_POWER;
+        };
+    }
+
+    /**
+     * Handles complete client message in decoder according to current state
+     *
+     * @param type kind of message that was expected
+     */
+    private void onMessage(MessageType type) throws SyntaxException, KeyOutOfRangeException, LoginFailedException, LogicException,
+            RechargingLimitException {
+        //If we receive other message than "FULL_POWER", server sends Logic Error
+        if (state == State.RECHARGING) {
+            if (!decoder.isFullPower()) {
+                throw LogicException.INSTANCE;
+            }
+            Metrics.recharged(System.nanoTime() - rechargingSince);
+            state = stateBeforeRecharging;
+            return;
+        }
+        //Handle recharging of robot, continue with previous expected action
+        if (decoder.isRecharging()) {
+            Log.debug("RECHARGING");
+            if (++recharges > config.maxRecharges) {
+                throw RechargingLimitException.INSTANCE;
+            }
+            stateBeforeRecharging = state;
+            state = State.RECHARGING;
+            rechargingSince = System.nanoTime();
+            return;
+        }
+        long value = type.parse(decoder.getFrame(), decoder.getLength());
+        switch (type) {
+            case NAME -> onName(decoder.getString(), decoder.getSum());
+            case KEY -> onKey((int) value);
+            case CONFIRMATION -> onConfirmation((int) value);
+            case OK -> onPosition(value);
+            case SECRET -> onSecret(decoder.getString());
+            case RECHARGING, FULL_POWER -> throw LogicException.INSTANCE;
+        }
+    }
+
+    private void onName(String name, int nameSum) {
+        Log.debug("Robot name: {}", name);
+        robotName = name;
+        authenticator.setName(nameSum);
+        Log.debug("Requesting KeyID.");
+        output.put(Response.KEY_REQUEST);
+        state = State.AWAIT_KEY;
+    }
+
+    private void onKey(int keyId) throws KeyOutOfRangeException {
+        Log.debug("Client given KeyID: {}", keyId);
+        authenticator.setKeyId(keyId);
+        Log.debug("Server hash: {} | Client hash: {}", authenticator.getServerHash(), authenticator.getClientHash());
+        authenticator.writeServerHash(output);
+        state = State.AWAIT_CONFIRM;
+    }
+
+    private void onConfirmation(int receivedClientHash) throws LoginFailedException {
+        Log.debug("Received client hash: {}", receivedClientHash);
+        authenticator.verify(receivedClientHash);
+        authenticated = true;
+        Log.info("Authentication successful - {}", robotName);
+        output.put(Response.OK);
+
+        //To establish position, try moving twice
+        Log.debug("--------------------Robot Movement--------------------");
+        robot = new Robot(robotName, NavigationStrategy.create(config.navigation));
+        firstMoves = 0;
+        move(Response.MOVE);
+        state = State.NAVIGATING;
+    }
+
+    private void onPosition(long packedPosition) {
+        int x = MessageParser.getX(packedPosition);
+        int y = MessageParser.getY(packedPosition);
+        if (firstMoves < 2) {
+            robot.setPosition(x, y);
+            if (Log.isEnabled(Log.Level.DEBUG)) {
+                Log.debug("Msg {} :{}", firstMoves, robot.toString());
+            }
+            firstMoves++;
+            if (firstMoves < 2) {
+                move(Response.MOVE);
+                return;
+            }
+            //After robot moved twice, navigate to [0,0]
+            robot.findDirection();
+            Log.debug("Navigating robot to [0,0].");
+            nextStep();
+            return;
+        }
+
+        //Update position only when robot tried to move, else change direction
+        if (lastMovement == Movement.MOVE) {
+            robot.setPosition(x, y);
+
+            //Fixes some situations, where obstacle is next to [0,0] and robot goes around it,
+            //and not picking up the secret in process
+            if (robot.isAtStartingCoordinates()) {
+                pickUpSecret();
+                return;
+            }
+        } else {
+            robot.changeDirection(lastMovement);
+        }
+
+        //In case robot was stuck on first two moves, need to determine direction after successful move was made
+        if (robot.getDirection() == Direction.UNDEFINED) {
+            robot.findDirection();
+        }
+        if (Log.isEnabled(Log.Level.DEBUG)) {
+            Log.debug(robot.toString());
+        }
+        nextStep();
+    }
+
+    /**
+     * Sends next movement of robot, loads new movements once the previous ones were used up
+     */
+    private void nextStep() {
+        while (steps == null || steps.isEmpty()) {
+            if (robot.getCollisions() >= config.maxCollisions) {
+                Log.info("Robot collided {} times, ending connection with client.", robot.getCollisions());
+                Metrics.navigationFinished(commands, robot.getCollisions());
+                logoutClient();
+                return;
+            }
+            steps = robot.getMoves();
+        }
+
+        Movement movement = steps.remove();
+        switch (movement) {
+            case MOVE -> move(Response.MOVE);
+            case ROTATE_LEFT -> move(Response.TURN_LEFT);
+            case ROTATE_RIGHT -> move(Response.TURN_RIGHT);
+            case PICK_UP -> {
+                pickUpSecret();    //Located at [0,0], should pick up the secret
+                return;
+            }
+        }
+        lastMovement = movement;
+    }
+
+    private void move(Response command) {
+        output.put(command);
+        commands++;
+    }
+
+    private void pickUpSecret() {
+        Metrics.navigationFinished(commands, robot.getCollisions());
+        Log.debug("--------------------Revealing Secret--------------------");
+        output.put(Response.PICK_UP);
+        state = State.AWAIT_SECRET;
+    }
+
+    private void onSecret(String secret) {
+        Log.info("Secret message: {}", secret);
+        logoutClient();
+    }
+
+    private void logoutClient() {
+        Log.debug("--------------------Client Logout--------------------");
+        output.put(Response.LOGOUT);
+        finish();
+        Metrics.sessionCompleted();
+    }
+
+    /**
+     * Ends session with error, error response is sent to client when there is one
+     */
+    private void fail(ProtocolException error) {
+        if (error.getResponse() != null) {
+            output.put(error.getResponse());
+        }
+        finish();
+        Metrics.sessionFailed(error.getFailure());
+        Log.info(error.getMessage());
+    }
+
+    private void finish() {
+        finished = true;
+        Metrics.sessionRecharges(recharges);
+    }
+}
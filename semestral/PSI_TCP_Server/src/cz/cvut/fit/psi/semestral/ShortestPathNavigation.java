@@ -0,0 +1,346 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Queue;
+
+/**
+ * Navigation that remembers obstacles robot collided with and plans the route to [0,0] with the fewest commands.
+ * Route is found by A* search over states (x, y, direction), as MOVE, TURN LEFT and TURN RIGHT all cost one
+ * round trip. Unknown fields are expected to be free, whenever robot collides with a new obstacle, remaining route
+ * is dropped and planned again. When ObstacleCache is enabled, obstacles found by other robots are avoided as well.
+ * <p>
+ * Searched area contains robot, [0,0] and known obstacles. Scratch buffers of the search are kept for the whole
+ * session, so planning again after collision allocates only the route. Area larger than MAX_AREA is not searched,
+ * robot far from [0,0] is navigated by SimpleNavigation until the area gets small enough.
+ */
+public class ShortestPathNavigation implements NavigationStrategy {
+    /* Directions in order of Direction.ordinal(), turning left adds one */
+    private static final int DIRECTIONS = 4;
+    private static final int[] DX = {0, -1, 0, 1};
+    private static final int[] DY = {1, 0, -1, 0};
+
+    /* Commands leading to a state, stored for route reconstruction */
+    private static final byte FROM_MOVE = 0;
+    private static final byte FROM_LEFT = 1;
+    private static final byte FROM_RIGHT = 2;
+
+    /* Cached obstacles further than this from robot and [0,0] are not considered */
+    private static final int CACHE_MARGIN = 2;
+    /* Maximum number of cached obstacles considered */
+    private static final int MAX_CACHED = 256;
+    /* Largest area searched, in fields */
+    static final int MAX_AREA = 64 * 64;
+
+    //Known obstacles as packed coordinates, see MessageParser.pack
+    private long[] obstacles = new long[8];
+    private int obstacleCount = 0;
+    //Shared obstacles, null when disabled
+    private final ObstacleCache cache;
+    //Obstacles from cache used by the last search
+    private final long[] cached;
+    private int cachedCount = 0;
+    private final SimpleNavigation fallback = new SimpleNavigation();
+
+    /* Scratch buffers of search indexed by state, grown when needed */
+    private int[] cost = new int[0];
+    private int[] previous;
+    private byte[] command;
+    //Values of state are valid only when its generation equals current search
+    private int[] generation;
+    private int search = 0;
+    //Only a frontier of the area is queued at once, grows when needed
+    private long[] heap = new long[64];
+    private int heapSize;
+    //Bitmap of blocked fields in searched area
+    private long[] blocked;
+
+    public ShortestPathNavigation() {
+        this(ObstacleCache.shared());
+    }
+
+    public ShortestPathNavigation(ObstacleCache cache) {
+        this.cache = cache;
+        this.cached = cache != null ? new long[MAX_CACHED] : null;
+    }
+
+    @Override
+    public void plan(Robot robot, Queue<Movement> movements) {
+        //First two moves failed to determine direction (got stuck), turn LEFT and MOVE
+        if (robot.getDirection() == Direction.UNDEFINED) {
+            if (robot.isStuck()) {
+                robot.addCollision();
+            }
+            movements.add(Movement.ROTATE_LEFT);
+            movements.add(Movement.MOVE);
+            return;
+        }
+        if (area(robot.getX(), robot.getY()) > MAX_AREA) {
+            //Collision was already counted by onPosition
+            fallback.addMoves(robot, robot.isStuck(), movements);
+            return;
+        }
+        //Cached obstacles may be outdated and block the route, then only obstacles found by this robot are used
+        if (!(cache != null && findRoute(robot.getX(), robot.getY(), robot.getDirection(), true, movements))
+                && !findRoute(robot.getX(), robot.getY(), robot.getDirection(), false, movements)) {
+            //Robot or [0,0] is enclosed by obstacles, keep trying until collision limit ends the session
+            movements.add(Movement.MOVE);
+        }
+    }
+
+    @Override
+    public void onPosition(Robot robot, Queue<Movement> movements) {
+        Direction direction = robot.getDirection();
+        if (!robot.isStuck()) {
+            //Robot stands on the field, so there is no obstacle - cache is locked only when it was reported as one
+            long field = MessageParser.pack(robot.getX(), robot.getY());
+            if (cache != null && (contains(obstacles, obstacleCount, field) || contains(cached, cachedCount, field))) {
+                cache.remove(field);
+            }
+            return;
+        }
+        if (direction == Direction.UNDEFINED) {
+            return;
+        }
+        int d = direction.ordinal();
+        long obstacle = MessageParser.pack(robot.getX() + DX[d], robot.getY() + DY[d]);
+        addObstacle(obstacle);
+        if (cache != null) {
+            cache.add(obstacle, System.currentTimeMillis());
+        }
+        Log.debug("Robot {} is stuck.", robot.getName());
+        robot.addCollision();
+        movements.clear();
+    }
+
+    private void addObstacle(long obstacle) {
+        if (contains(obstacles, obstacleCount, obstacle)) {
+            return;
+        }
+        if (obstacleCount == obstacles.length) {
+            obstacles = Arrays.copyOf(obstacles, obstacleCount * 2);
+        }
+        obstacles[obstacleCount++] = obstacle;
+    }
+
+    private static boolean contains(long[] fields, int count, long field) {
+        for (int i = 0; i < count; i++) {
+            if (fields[i] == field) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of fields in area that would be searched, with margin for cached obstacles
+     */
+    private long area(int x, int y) {
+        long minX = Math.min(0, x);
+        long maxX = Math.max(0, x);
+        long minY = Math.min(0, y);
+        long maxY = Math.max(0, y);
+        for (int i = 0; i < obstacleCount; i++) {
+            minX = Math.min(minX, MessageParser.getX(obstacles[i]));
+            maxX = Math.max(maxX, MessageParser.getX(obstacles[i]));
+            minY = Math.min(minY, MessageParser.getY(obstacles[i]));
+            maxY = Math.max(maxY, MessageParser.getY(obstacles[i]));
+        }
+        return (maxX - minX + 3 + 2 * CACHE_MARGIN) * (maxY - minY + 3 + 2 * CACHE_MARGIN);
+    }
+
+    /**
+     * Searches area containing robot, [0,0] and all known obstacles, with one free field around,
+     * so that any obstacle inside can be walked around
+     *
+     * @param useCache whether obstacles from shared cache are avoided too
+     * @return false if there is no route
+     */
+    private boolean findRoute(int x, int y, Direction direction, boolean useCache, Queue<Movement> movements) {
+        int minX = Math.min(0, x);
+        int maxX = Math.max(0, x);
+        int minY = Math.min(0, y);
+        int maxY = Math.max(0, y);
+        int margin = useCache ? CACHE_MARGIN : 0;
+        if (useCache) {
+            cachedCount = cache.collect(minX - margin, maxX + margin, minY - margin, maxY + margin,
+                    System.currentTimeMillis(), cached);
+        }
+        for (int i = 0; i < obstacleCount; i++) {
+            minX = Math.min(minX, MessageParser.getX(obstacles[i]));
+            maxX = Math.max(maxX, MessageParser.getX(obstacles[i]));
+            minY = Math.min(minY, MessageParser.getY(obstacles[i]));
+            maxY = Math.max(maxY, MessageParser.getY(obstacles[i]));
+        }
+        minX -= 1 + margin;
+        minY -= 1 + margin;
+        int width = maxX - minX + 2 + margin;
+        int height = maxY - minY + 2 + margin;
+        int states = width * height * DIRECTIONS;
+        prepare(states);
+
+        for (int i = 0; i < obstacleCount; i++) {
+            block((MessageParser.getY(obstacles[i]) - minY) * width + MessageParser.getX(obstacles[i]) - minX);
+        }
+        for (int i = 0; useCache && i < cachedCount; i++) {
+            block((MessageParser.getY(cached[i]) - minY) * width + MessageParser.getX(cached[i]) - minX);
+        }
+
+        //State is (field * DIRECTIONS + direction), field is (y * width + x) relative to the area
+        int start = ((y - minY) * width + x - minX) * DIRECTIONS + direction.ordinal();
+        int goalX = -minX;
+        int goalY = -minY;
+        reach(start, start, FROM_MOVE, 0, goalX, goalY, width);
+
+        while (heapSize > 0) {
+            long top = poll();
+            int state = (int) top;
+            int cost = this.cost[state];
+            //Same state may be queued again with lower cost, the one with higher cost is skipped
+            if ((int) (top >>> 32) != cost + heuristic(state, goalX, goalY, width)) {
+                continue;
+            }
+            int field = state / DIRECTIONS;
+            int d = state % DIRECTIONS;
+            if (field == goalY * width + goalX) {
+                addRoute(start, state, movements);
+                return true;
+            }
+
+            reach(state, field * DIRECTIONS + (d + 1) % DIRECTIONS, FROM_LEFT, cost + 1, goalX, goalY, width);
+            reach(state, field * DIRECTIONS + (d + 3) % DIRECTIONS, FROM_RIGHT, cost + 1, goalX, goalY, width);
+            int nextX = field % width + DX[d];
+            int nextY = field / width + DY[d];
+            if (nextX >= 0 && nextX < width && nextY >= 0 && nextY < height && !isBlocked(nextY * width + nextX)) {
+                reach(state, (nextY * width + nextX) * DIRECTIONS + d, FROM_MOVE, cost + 1, goalX, goalY, width);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Grows scratch buffers when area is larger than any before and starts new search
+     */
+    private void prepare(int states) {
+        if (cost.length < states) {
+            int capacity = Math.max(states, cost.length * 2);
+            cost = new int[capacity];
+            previous = new int[capacity];
+            command = new byte[capacity];
+            generation = new int[capacity];
+            blocked = new long[(capacity / DIRECTIONS + 63) / 64];
+        }
+        Arrays.fill(blocked, 0, (states / DIRECTIONS + 63) / 64, 0);
+        heapSize = 0;
+        //States from previous searches are recognized by older generation, so arrays need not be cleared
+        if (++search == 0) {
+            Arrays.fill(generation, 0);
+            search = 1;
+        }
+    }
+
+    private void block(int field) {
+        blocked[field >>> 6] |= 1L << field;
+    }
+
+    private boolean isBlocked(int field) {
+        return (blocked[field >>> 6] & (1L << field)) != 0;
+    }
+
+    /**
+     * Queues state when it was not reached yet or is reached with lower cost
+     */
+    private void reach(int from, int to, byte via, int toCost, int goalX, int goalY, int width) {
+        if (generation[to] == search && cost[to] <= toCost) {
+            return;
+        }
+        generation[to] = search;
+        cost[to] = toCost;
+        previous[to] = from;
+        command[to] = via;
+        offer(((long) (toCost + heuristic(to, goalX, goalY, width)) << 32) | to);
+    }
+
+    /**
+     * Lower bound of commands to goal - Manhattan distance plus turns needed to face every direction
+     * robot has to move in. Every command changes it by at most one, so A* never expands a state twice.
+     */
+    private static int heuristic(int state, int goalX, int goalY, int width) {
+        int field = state / DIRECTIONS;
+        int dx = goalX - field % width;
+        int dy = goalY - field / width;
+        int d = state % DIRECTIONS;
+        boolean facingX = dx != 0 && Integer.signum(dx) == DX[d];
+        boolean facingY = dy != 0 && Integer.signum(dy) == DY[d];
+        int turns;
+        if (dx != 0 && dy != 0) {
+            turns = facingX || facingY ? 1 : 2;
+        } else if (dx != 0) {
+            turns = facingX ? 0 : DX[d] == 0 ? 1 : 2;
+        } else if (dy != 0) {
+            turns = facingY ? 0 : DY[d] == 0 ? 1 : 2;
+        } else {
+            turns = 0;
+        }
+        return Math.abs(dx) + Math.abs(dy) + turns;
+    }
+
+    /* Binary min-heap of (estimate << 32 | state) */
+
+    private void offer(long entry) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    private long poll() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+    /**
+     * Walks route back from goal to start, then adds its commands in order
+     */
+    private void addRoute(int start, int goal, Queue<Movement> movements) {
+        int length = 0;
+        for (int state = goal; state != start; state = previous[state]) {
+            length++;
+        }
+        Movement[] route = new Movement[length];
+        for (int state = goal; state != start; state = previous[state]) {
+            route[--length] = switch (command[state]) {
+                case FROM_LEFT -> Movement.ROTATE_LEFT;
+                case FROM_RIGHT -> Movement.ROTATE_RIGHT;
+                default -> Movement.MOVE;
+            };
+        }
+        movements.addAll(Arrays.asList(route));
+    }
+}
@@ -0,0 +1,79 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.util.Queue;
+
+/**
+ * Original navigation - turns towards [0,0] along one axis at a time and goes around obstacles by a fixed detour
+ */
+public class SimpleNavigation implements NavigationStrategy {
+    @Override
+    public void plan(Robot robot, Queue<Movement> movements) {
+        boolean stuck = robot.isStuck();
+        if (stuck) {            //Robot has collided with an obstacle
+            Log.debug("Robot {} is stuck.", robot.getName());
+            robot.addCollision();
+        }
+        addMoves(robot, stuck, movements);
+    }
+
+    /**
+     * Plans next movements without counting collision, also used by ShortestPathNavigation far from [0,0]
+     *
+     * @param stuck whether robot collided with an obstacle by the last move
+     */
+    void addMoves(Robot robot, boolean stuck, Queue<Movement> movements) {
+        if (stuck) {
+            //First two moves failed to determine direction (got stuck), turn LEFT and MOVE
+            if (robot.getDirection() == Direction.UNDEFINED) {
+                movements.add(Movement.ROTATE_LEFT);
+                movements.add(Movement.MOVE);
+            } else {
+                loadMovesToGoAroundObstacle(robot, movements);
+            }
+        } else {
+            simpleMove(robot, movements);
+        }
+    }
+
+    /**
+     * Turns robot towards [0,0] - first along X axis, then along Y axis, queues all rotations together with MOVE.
+     * Turning around is always LEFT, LEFT - robot to the left of [0,0] facing LEFT used to get RIGHT, RIGHT.
+     */
+    private void simpleMove(Robot robot, Queue<Movement> movements) {
+        Direction target;
+        if (robot.getX() < 0) {             //Robot is to the left of [0,0], navigate RIGHT
+            target = Direction.RIGHT;
+        } else if (robot.getX() > 0) {      //Robot is to the right of [0,0], navigate LEFT
+            target = Direction.LEFT;
+        } else if (robot.getY() > 0) {      //Robot is up top of [0,0], navigate DOWN
+            target = Direction.DOWN;
+        } else {                            //Robot is down of [0,0], navigate UP
+            target = Direction.UP;
+        }
+        RotationPlanner.addRotations(robot.getDirection(), target, movements);
+        movements.add(Movement.MOVE);
+    }
+
+    private void loadMovesToGoAroundObstacle(Robot robot, Queue<Movement> movements) {
+        if (robot.getX() == 0 || robot.getY() == 0) {
+            movements.add(Movement.ROTATE_LEFT);
+            movements.add(Movement.MOVE);
+            movements.add(Movement.ROTATE_RIGHT);
+            movements.add(Movement.MOVE);
+            movements.add(Movement.MOVE);
+            movements.add(Movement.ROTATE_RIGHT);
+            movements.add(Movement.MOVE);
+            movements.add(Movement.ROTATE_LEFT);
+        } else {
+            // In case we are not at position [0,y] or [x,0],
+            // navigate to other direction that will lead us to said positions
+            switch (robot.getDirection()) {
+                case UP -> movements.add(robot.getX() > 0 ? Movement.ROTATE_LEFT : Movement.ROTATE_RIGHT);
+                case DOWN -> movements.add(robot.getX() < 0 ? Movement.ROTATE_LEFT : Movement.ROTATE_RIGHT);
+                case LEFT -> movements.add(robot.getY() > 0 ? Movement.ROTATE_LEFT : Movement.ROTATE_RIGHT);
+                case RIGHT -> movements.add(robot.getY() < 0 ? Movement.ROTATE_LEFT : Movement.ROTATE_RIGHT);
+            }
+            movements.add(Movement.MOVE);
+        }
+    }
+}
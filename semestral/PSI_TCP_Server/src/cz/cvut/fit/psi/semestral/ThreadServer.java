@@ -0,0 +1,120 @@
+package cz.cvut.fit.psi.semestral;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Blocking server mode - acceptor thread admits clients and runs a Handler for each of them by HandlerExecutor
+ */
+public class ThreadServer implements RobotServer {
+    private final int port;
+    private final HandlerExecutor executor;
+    private final AdmissionControl admission;
+    //Handlers that are running or waiting in backlog, to be logged out on force close
+    private final Set<Handler> handlers = ConcurrentHashMap.newKeySet();
+
+    private ServerSocket server;
+    private volatile boolean accepting;
+
+    public ThreadServer(int port, HandlerExecutor executor, AdmissionControl admission) {
+        this.port = port;
+        this.executor = executor;
+        this.admission = admission;
+    }
+
+    @Override
+    public void start() throws IOException {
+        server = new ServerSocket(port);
+        accepting = true;
+        Log.info("Server started on port: {} in {} mode", port, executor.getMode());
+        new Thread(this::acceptClients, "acceptor").start();
+    }
+
+    @Override
+    public void stopAccepting() {
+        if (!accepting) {
+            return;
+        }
+        accepting = false;
+        try {
+            server.close();
+        } catch (IOException e) {
+            Log.warn("Cannot close server socket - {}", e.getMessage());
+        }
+        executor.shutdown();
+    }
+
+    @Override
+    public void forceClose() {
+        for (Handler handler : handlers) {
+            handler.shutdown();
+        }
+    }
+
+    @Override
+    public int getSessions() {
+        return admission.getConnections();
+    }
+
+    private void acceptClients() {
+        Log.info("Waiting for a client ...");
+        while (accepting) {
+            Socket client;
+            try {
+                client = server.accept();
+            } catch (IOException e) {
+                //Closed server socket is expected once server stopped accepting
+                if (accepting) {
+                    Log.error("Cannot accept client - {}", e);
+                }
+                return;
+            }
+
+            try {
+                accept(client);
+            } catch (IOException e) {
+                Log.warn("Cannot close rejected client - {}", e.getMessage());
+            }
+        }
+    }
+
+    private void accept(Socket client) throws IOException {
+        //Rejected client is closed before anything is allocated for its session
+        if (!admission.admit(client.getInetAddress())) {
+            client.close();
+            return;
+        }
+        Log.debug("Client accepted: {}", client.getInetAddress().getHostAddress());
+
+        Handler handler;
+        try {
+            handler = new Handler(client, admission);
+        } catch (IOException e) {
+            Log.warn("Cannot open client streams - {}", e.getMessage());
+            admission.release();
+            client.close();
+            return;
+        }
+
+        handlers.add(handler);
+        boolean submitted = executor.submit(() -> {
+            try {
+                handler.run();
+            } finally {
+                handlers.remove(handler);
+            }
+        });
+        if (submitted) {
+            Metrics.sessionAccepted();
+        } else {
+            handlers.remove(handler);
+            Metrics.sessionRejected();
+            Log.warn("Too many sessions, rejecting client.");
+            admission.release();
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package cz.cvut.fit.psi.semestral;
+
+/**
+ * Hashed timer wheel tracking deadlines of sessions owned by one event loop, not thread safe.
+ * Every timeout is linked into the slot of its deadline tick, scheduling and cancelling is O(1) without allocation.
+ * Postponing a deadline only stores the new value, timeout is moved to a later slot once its old slot comes up,
+ * so sessions that keep receiving messages cost just a field write per read.
+ * Times are monotonic ms (System.nanoTime() / 1_000_000), changes of wall clock do not move deadlines.
+ */
+public class TimerWheel {
+    private final long tickDuration;
+    private final Timeout[] slots;
+    private final int mask;
+    //Last tick that was already processed
+    private long currentTick;
+
+    /**
+     * @param tickDuration  resolution of timeouts in ms
+     * @param ticksPerWheel number of slots, rounded up to power of two
+     * @param now           current time in ms
+     */
+    public TimerWheel(long tickDuration, int ticksPerWheel, long now) {
+        int size = Integer.highestOneBit(Math.max(ticksPerWheel - 1, 1)) << 1;
+        this.tickDuration = tickDuration;
+        this.slots = new Timeout[size];
+        this.mask = size - 1;
+        this.currentTick = now / tickDuration;
+    }
+
+    public long getTickDuration() {
+        return tickDuration;
+    }
+
+    /**
+     * Sets deadline of timeout, works also for timeout that is already scheduled
+     *
+     * @param timeout  timeout to be scheduled
+     * @param deadline time in ms when timeout expires
+     */
+    public void schedule(Timeout timeout, long deadline) {
+        timeout.deadline = deadline;
+        //Later deadline is picked up when the current slot expires
+        if (timeout.scheduled && tickOf(deadline) >= timeout.tick) {
+            return;
+        }
+        cancel(timeout);
+        link(timeout, tickOf(deadline));
+    }
+
+    public void cancel(Timeout timeout) {
+        if (!timeout.scheduled) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[(int) (timeout.tick & mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.scheduled = false;
+    }
+
+    /**
+     * Expires every timeout whose deadline has passed
+     *
+     * @param now current time in ms
+     */
+    public void advance(long now) {
+        long nowTick = now / tickDuration;
+        while (currentTick < nowTick) {
+            currentTick++;
+            Timeout timeout = slots[(int) (currentTick & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.tick <= currentTick) {
+                    cancel(timeout);
+                    if (timeout.deadline <= now) {
+                        timeout.task.run();
+                    } else {
+                        //Deadline was postponed meanwhile
+                        link(timeout, tickOf(timeout.deadline));
+                    }
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    private long tickOf(long deadline) {
+        //Round up, timeout never expires before its deadline
+        return Math.max((deadline + tickDuration - 1) / tickDuration, currentTick + 1);
+    }
+
+    private void link(Timeout timeout, long tick) {
+        int slot = (int) (tick & mask);
+        timeout.tick = tick;
+        timeout.prev = null;
+        timeout.next = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].prev = timeout;
+        }
+        slots[slot] = timeout;
+        timeout.scheduled = true;
+    }
+
+    /**
+     * Node of timer wheel, created once per session and rescheduled for its whole life
+     */
+    public static class Timeout {
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private long deadline;
+        //Tick of slot the timeout is linked in
+        private long tick;
+        private boolean scheduled = false;
+
+        public Timeout(Runnable task) {
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cz.cvut.fit.psi.semestral;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hashes of names up to the longest one that can be configured by "message.name"
+ */
+class AuthenticatorTest {
+    @Test
+    void nameHashOfShortName() {
+        //"Mnau!" from the assignment
+        assertEquals(40784, Authenticator.getNameHash(434));
+    }
+
+    @Test
+    void nameHashOfLongestName() throws Exception {
+        int limit = MessageType.NAME.getLengthLimit();
+        byte[] message = new byte[limit];
+        Arrays.fill(message, 0, limit - 2, (byte) 0xFF);
+        message[limit - 2] = '\u0007';
+        message[limit - 1] = '\b';
+
+        FrameDecoder decoder = new FrameDecoder(limit);
+        decoder.expect(limit, true);
+        assertTrue(decoder.decode(ByteBuffer.wrap(message)));
+        int sum = decoder.getSum();
+        assertEquals(255L * (limit - 2), sum);
+
+        int hash = Authenticator.getNameHash(sum);
+        assertEquals(sum * 1000L % 65536, hash);
+
+        Authenticator authenticator = new Authenticator();
+        authenticator.setName(sum);
+        for (int keyId = 0; keyId < Constants.KEYS.length; keyId++) {
+            authenticator.setKeyId(keyId);
+            int expected = (hash + Constants.KEYS[keyId].server) % 65536;
+            assertEquals(expected, authenticator.getServerHash());
+            assertEquals(expected + "\u0007\b", written(authenticator));
+        }
+    }
+
+    private static String written(Authenticator authenticator) throws IOException {
+        OutputBuffer output = new OutputBuffer(64);
+        authenticator.writeServerHash(output);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        output.flush(Channels.newChannel(bytes));
+        return bytes.toString(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,118 @@
+package cz.cvut.fit.psi.semestral;
+
+import cz.cvut.fit.psi.semestral.Exceptions.SyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Framing of client messages by \a\b across chunks and limits of message length
+ */
+class FrameDecoderTest {
+    private static final String END = Constants.MSG_ENDING;
+
+    private final FrameDecoder decoder = new FrameDecoder(100);
+
+    @Test
+    void messagesInOneChunk() throws Exception {
+        ByteBuffer input = bytes("Oompa" + END + "Loompa" + END + "rest");
+        assertTrue(decoder.decode(input));
+        assertEquals("Oompa", decoder.getString());
+        //Bytes after the message are left for the next message
+        assertTrue(decoder.decode(input));
+        assertEquals("Loompa", decoder.getString());
+        assertFalse(decoder.decode(input));
+        assertFalse(input.hasRemaining());
+        assertTrue(decoder.decode(bytes(END)));
+        assertEquals("rest", decoder.getString());
+    }
+
+    @Test
+    void endingSplitAcrossChunks() throws Exception {
+        assertFalse(decoder.decode(bytes("Mnau!\u0007")));
+        assertTrue(decoder.decode(bytes("\b")));
+        assertEquals("Mnau!", decoder.getString());
+        assertEquals(434, decoder.getSum());
+    }
+
+    @Test
+    void byteByByte() throws Exception {
+        String message = "OK -3 12";
+        byte[] bytes = (message + END).getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < bytes.length - 1; i++) {
+            assertFalse(decoder.decode(ByteBuffer.wrap(bytes, i, 1)));
+        }
+        assertTrue(decoder.decode(ByteBuffer.wrap(bytes, bytes.length - 1, 1)));
+        assertEquals(message, decoder.getString());
+    }
+
+    @Test
+    void bellInsideMessage() throws Exception {
+        assertTrue(decoder.decode(bytes("a\u0007b\u0007\u0007" + END)));
+        assertEquals("a\u0007b\u0007\u0007", decoder.getString());
+        assertTrue(decoder.decode(bytes("\u0007" + END)));
+        assertEquals("\u0007", decoder.getString(), "only the last \\a before \\b belongs to the ending");
+    }
+
+    @Test
+    void emptyMessage() throws Exception {
+        assertTrue(decoder.decode(bytes(END)));
+        assertEquals(0, decoder.getLength());
+    }
+
+    @Test
+    void maximumLength() throws Exception {
+        decoder.expect(7);
+        assertTrue(decoder.decode(bytes("12345" + END)));
+        assertEquals("12345", decoder.getString());
+
+        decoder.expect(7);
+        assertThrows(SyntaxException.class, () -> decoder.decode(bytes("123456")));
+    }
+
+    @Test
+    void bellCountsTowardsLengthOnlyInsideMessage() throws Exception {
+        decoder.expect(7);
+        assertTrue(decoder.decode(bytes("1234\u0007" + END)));
+        assertEquals("1234\u0007", decoder.getString());
+
+        decoder.expect(7);
+        assertThrows(SyntaxException.class, () -> decoder.decode(bytes("12345\u0007\u0007")));
+    }
+
+    @Test
+    void rechargingExceedsShorterLimit() throws Exception {
+        decoder.expect(MessageType.KEY.getMaxLength(), true);
+        assertTrue(decoder.decode(bytes(Constants.RECHARGING + END)));
+        assertTrue(decoder.isRecharging());
+
+        decoder.expect(MessageType.KEY.getMaxLength(), true);
+        assertThrows(SyntaxException.class, () -> decoder.decode(bytes("RECHARGINX")));
+        decoder.reset();
+
+        decoder.expect(MessageType.KEY.getMaxLength(), true);
+        assertThrows(SyntaxException.class, () -> decoder.decode(bytes(Constants.RECHARGING + "S")));
+        decoder.reset();
+
+        decoder.expect(MessageType.KEY.getMaxLength(), false);
+        assertThrows(SyntaxException.class, () -> decoder.decode(bytes(Constants.RECHARGING)));
+    }
+
+    @Test
+    void fullPower() throws Exception {
+        assertTrue(decoder.decode(bytes(Constants.FULL_POWER + END)));
+        assertTrue(decoder.isFullPower());
+        assertFalse(decoder.isRecharging());
+        assertTrue(decoder.decode(bytes("FULL POWER!" + END)));
+        assertFalse(decoder.isFullPower());
+        assertTrue(decoder.decode(bytes("RECHARGIN" + END)));
+        assertFalse(decoder.isRecharging());
+    }
+
+    private static ByteBuffer bytes(String chunk) {
+        return ByteBuffer.wrap(chunk.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,123 @@
+package cz.cvut.fit.psi.semestral;
+
+import cz.cvut.fit.psi.semestral.Exceptions.SyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Differential test of MessageParser against the original parsing by regular expressions and Integer.parseInt,
+ * where number out of int range is a syntax error as well
+ */
+class MessageParserTest {
+    private static final List<String> EDGE_CASES = List.of(
+            "", "O", "OK", "OK ", "OK 1", "OK 1 ", "OK  1 2", "OK 1  2", " OK 1 2", "OK 1 2 ", "ok 1 2", "OK1 2",
+            "OK 1 2x", "OK 1 2 3", "OK 1.5 2", "OK +1 2", "OK 1 +2", "OK - 2", "OK 1 -", "OK -- 1", "OK 1 --2",
+            "OK -0 0", "OK 007 -0003", "OK 0000000000000000000001 2",
+            "OK 2147483647 -2147483648", "OK 2147483648 0", "OK 0 -2147483649", "OK -2147483647 2147483646",
+            "OK 99999999999 0", "OK 1 2\n", "OK 1\t2", "OK 1 2\u0007",
+            "0", "00", "-0", "-1", "+1", "1 ", " 1", "1x", "12a", "2147483647", "2147483648", "02147483647",
+            "4294967296", "99999999999", "1\n", "1.0");
+    /* Characters random messages are made of, so that valid messages are not too rare */
+    private static final String ALPHABET = "OK -0123456789 +x\n";
+
+    @Test
+    void edgeCases() {
+        for (String message : EDGE_CASES) {
+            assertSameResult(message);
+        }
+    }
+
+    @Test
+    void randomCharacters() {
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder message = new StringBuilder(random.nextBoolean() ? "OK " : "");
+            int length = random.nextInt(14);
+            for (int j = 0; j < length; j++) {
+                message.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            assertSameResult(message.toString());
+        }
+    }
+
+    @Test
+    void randomNumbers() {
+        Random random = new Random(2);
+        for (int i = 0; i < 200_000; i++) {
+            String x = randomNumber(random);
+            String y = randomNumber(random);
+            assertSameResult("OK " + x + " " + y);
+            assertSameResult(x);
+        }
+    }
+
+    /**
+     * Number around int bounds, with random sign and leading zeros
+     */
+    private static String randomNumber(Random random) {
+        long value = switch (random.nextInt(4)) {
+            case 0 -> random.nextInt(1000);
+            case 1 -> Integer.MAX_VALUE - 2 + random.nextInt(5);
+            case 2 -> -(long) Integer.MIN_VALUE - 2 + random.nextInt(5);
+            default -> random.nextLong() >>> random.nextInt(64);
+        };
+        String zeros = "0".repeat(random.nextInt(8) == 0 ? random.nextInt(12) : 0);
+        return (random.nextBoolean() ? "-" : "") + zeros + value;
+    }
+
+    private static void assertSameResult(String message) {
+        //Bytes after the message must be ignored, decoder reuses its frame
+        byte[] bytes = message.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] frame = Arrays.copyOf(bytes, bytes.length + 4);
+        Arrays.fill(frame, bytes.length, frame.length, (byte) '7');
+
+        assertEquals(result(() -> referencePosition(message)),
+                result(() -> MessageParser.parsePosition(frame, bytes.length)), "position " + message);
+        assertEquals(result(() -> referenceNumber(message)),
+                result(() -> MessageParser.parseNumber(frame, bytes.length)), "number " + message);
+    }
+
+    private static long referencePosition(String message) throws SyntaxException {
+        if (!message.matches("^OK -?[0-9]+ -?[0-9]+$")) {
+            throw SyntaxException.INSTANCE;
+        }
+        String[] msg = message.split(" ");
+        try {
+            return MessageParser.pack(Integer.parseInt(msg[1]), Integer.parseInt(msg[2]));
+        } catch (NumberFormatException e) {
+            throw SyntaxException.INSTANCE;
+        }
+    }
+
+    private static long referenceNumber(String message) throws SyntaxException {
+        if (!message.matches("^[0-9]+$")) {
+            throw SyntaxException.INSTANCE;
+        }
+        try {
+            return Integer.parseInt(message);
+        } catch (NumberFormatException e) {
+            throw SyntaxException.INSTANCE;
+        }
+    }
+
+    private interface Parse {
+        long parse() throws SyntaxException;
+    }
+
+    /**
+     * @return parsed value, or "syntax error", any other exception fails the test
+     */
+    private static String result(Parse parse) {
+        try {
+            return Long.toString(parse.parse());
+        } catch (SyntaxException e) {
+            return "syntax error";
+        }
+    }
+}
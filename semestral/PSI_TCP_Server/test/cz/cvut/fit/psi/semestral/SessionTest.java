@@ -0,0 +1,282 @@
+package cz.cvut.fit.psi.semestral;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Protocol of Session driven in memory - client bytes are fed in chunks, server messages are read
+ * from OutputBuffer. Robot "Mnau!" with key 0 has server hash 63803 and client hash 7285.
+ */
+class SessionTest {
+    private static final String END = Constants.MSG_ENDING;
+    /* Whole session of robot that stands next to [0,0], one message per element */
+    private static final List<String> FLOW = List.of("Mnau!", "0", "7285", "OK 0 1", "OK 0 0", "Secret");
+    private static final String FLOW_OUTPUT = out(Response.KEY_REQUEST) + "63803" + END + out(Response.OK)
+            + out(Response.MOVE) + out(Response.MOVE) + out(Response.PICK_UP) + out(Response.LOGOUT);
+
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    private final WritableByteChannel channel = Channels.newChannel(sent);
+    private final OutputBuffer output = new OutputBuffer(1024);
+
+    @AfterEach
+    void restoreConfig() throws IOException {
+        Config.load(List.of());
+    }
+
+    @Test
+    void wholeSessionInOneChunk() throws IOException {
+        Session session = new Session(output);
+        assertEquals(FLOW_OUTPUT, send(session, String.join(END, FLOW) + END));
+        assertTrue(session.isFinished());
+    }
+
+    @Test
+    void wholeSessionByteByByte() throws IOException {
+        Session session = new Session(output);
+        StringBuilder received = new StringBuilder();
+        for (char c : (String.join(END, FLOW) + END).toCharArray()) {
+            received.append(send(session, String.valueOf(c)));
+        }
+        assertEquals(FLOW_OUTPUT, received.toString());
+        assertTrue(session.isFinished());
+    }
+
+    @Test
+    void endingSplitAcrossChunks() throws IOException {
+        Session session = new Session(output);
+        assertEquals("", send(session, "Mnau!\u0007"));
+        assertEquals(out(Response.KEY_REQUEST), send(session, "\b0\u0007"));
+        assertEquals("63803" + END, send(session, "\b"));
+        assertEquals(Session.State.AWAIT_CONFIRM, session.getState());
+    }
+
+    @Test
+    void bellInsideMessage() throws IOException {
+        //\a not followed by \b is part of the name, so the hash differs from "Mnau!"
+        Session session = new Session(output);
+        assertEquals(out(Response.KEY_REQUEST), send(session, "Mnau!\u0007" + END));
+        assertEquals(((434 + 7) * 1000 % 65536 + 23019) % 65536 + END, send(session, "0" + END));
+    }
+
+    /**
+     * RECHARGING, FULL POWER inserted before every message of the session, in every state, changes nothing
+     */
+    @Test
+    void rechargingInEveryState() throws IOException {
+        for (int i = 0; i < FLOW.size(); i++) {
+            Session session = new Session(output);
+            StringBuilder received = new StringBuilder();
+            for (int j = 0; j < FLOW.size(); j++) {
+                if (i == j) {
+                    Session.State before = session.getState();
+                    assertEquals("", send(session, Constants.RECHARGING + END));
+                    assertEquals(Session.State.RECHARGING, session.getState());
+                    assertEquals(Constants.TIMEOUT_RECHARGING, session.getTimeout());
+                    assertEquals("", send(session, Constants.FULL_POWER + END));
+                    assertEquals(before, session.getState(), "state after recharging before message " + i);
+                }
+                received.append(send(session, FLOW.get(j) + END));
+            }
+            assertEquals(FLOW_OUTPUT, received.toString(), "recharging before message " + i);
+        }
+    }
+
+    @Test
+    void otherMessageWhileRecharging() throws IOException {
+        Session session = new Session(output);
+        send(session, "Mnau!" + END + Constants.RECHARGING + END);
+        assertEquals(out(Response.LOGIC_ERROR), send(session, "0" + END));
+        assertTrue(session.isFinished());
+    }
+
+    /**
+     * Longest allowed message is accepted, one byte more is rejected right away, before \a\b comes
+     */
+    @Test
+    void lengthOverflowOfEveryType() throws IOException {
+        for (MessageType type : MessageType.values()) {
+            String prefix = switch (type) {
+                case NAME -> "";
+                case KEY -> "Mnau!" + END;
+                case CONFIRMATION -> "Mnau!" + END + "0" + END;
+                case OK -> "Mnau!" + END + "0" + END + "7285" + END;
+                case SECRET -> "Mnau!" + END + "0" + END + "7285" + END + "OK 0 1" + END + "OK 0 0" + END;
+                case FULL_POWER -> "Mnau!" + END + Constants.RECHARGING + END;
+                //RECHARGING is never expected, it may exceed limit of the expected message instead
+                case RECHARGING -> "Mnau!" + END;
+            };
+            int content = type.getMaxLength() - 2;
+
+            Session session = new Session(output);
+            send(session, prefix);
+            if (type == MessageType.RECHARGING) {
+                assertTrue(Constants.RECHARGING.length() > MessageType.KEY.getMaxLength() - 2);
+                assertEquals("", send(session, Constants.RECHARGING + END));
+                assertEquals(Session.State.RECHARGING, session.getState());
+                continue;
+            }
+            assertEquals("", send(session, "1".repeat(content)), type + " of maximum length");
+            assertFalse(session.isFinished(), type + " of maximum length");
+            assertEquals(out(Response.SYNTAX_ERROR), send(session, "1"), type + " longer than maximum");
+            assertTrue(session.isFinished());
+        }
+    }
+
+    @Test
+    void configuredLength() throws IOException {
+        Config.load(List.of("--message.name=8"));
+        Session session = new Session(output);
+        assertEquals(out(Response.SYNTAX_ERROR), send(session, "Mnau!!!"));
+    }
+
+    @Test
+    void loginDeadline() throws Exception {
+        Config.load(List.of("--login.deadline=1"));
+        Session session = new Session(output);
+        Thread.sleep(5);
+        assertEquals(1, session.getTimeout());
+        //Timeout closes the connection without any response
+        assertEquals("", send(session, "Mnau!" + END));
+        assertTrue(session.isFinished());
+    }
+
+    @Test
+    void loginDeadlineNotAppliedAfterLogin() throws Exception {
+        Config.load(List.of("--login.deadline=50"));
+        Session session = new Session(output);
+        send(session, "Mnau!" + END + "0" + END + "7285" + END);
+        Thread.sleep(60);
+        assertEquals(Constants.TIMEOUT, session.getTimeout());
+        assertEquals(out(Response.MOVE), send(session, "OK 0 1" + END));
+        assertFalse(session.isFinished());
+    }
+
+    @Test
+    void rechargingCap() throws IOException {
+        Config.load(List.of("--recharging.max=2"));
+        Session session = new Session(output);
+        String cycle = Constants.RECHARGING + END + Constants.FULL_POWER + END;
+        assertEquals("", send(session, cycle + cycle));
+        assertEquals(out(Response.LOGIC_ERROR), send(session, Constants.RECHARGING + END));
+        assertTrue(session.isFinished());
+    }
+
+    /**
+     * Robot that never moves collides on every MOVE, it is logged out after configured number of collisions
+     */
+    @Test
+    void collisionCap() throws IOException {
+        Config.load(List.of("--collisions.max=3"));
+        Session session = new Session(output);
+        send(session, "Mnau!" + END + "0" + END + "7285" + END);
+        List<String> commands = new ArrayList<>();
+        for (int i = 0; i < 100 && !session.isFinished(); i++) {
+            commands.addAll(messages(send(session, "OK 5 5" + END)));
+        }
+        assertTrue(session.isFinished());
+        assertEquals(Response.LOGOUT.toString(), commands.get(commands.size() - 1));
+        assertTrue(commands.stream().filter(Response.MOVE.toString()::equals).count() >= 3);
+    }
+
+    /**
+     * Robot on empty field follows commands until it is at [0,0]
+     */
+    @Test
+    void navigationToStart() throws IOException {
+        int[] dx = {0, -1, 0, 1};
+        int[] dy = {1, 0, -1, 0};
+        int x = 3;
+        int y = -2;
+        int direction = 2; //DOWN, robot turns LEFT by adding one
+        Session session = new Session(output);
+        List<String> commands = messages(send(session, "Mnau!" + END + "0" + END + "7285" + END));
+        assertEquals(List.of(Response.KEY_REQUEST.toString(), "63803", Response.OK.toString(), Response.MOVE.toString()),
+                commands);
+
+        String command = Response.MOVE.toString();
+        for (int i = 0; i < 100 && !command.equals(Response.PICK_UP.toString()); i++) {
+            if (command.equals(Response.MOVE.toString())) {
+                x += dx[direction];
+                y += dy[direction];
+            } else if (command.equals(Response.TURN_LEFT.toString())) {
+                direction = (direction + 1) % 4;
+            } else if (command.equals(Response.TURN_RIGHT.toString())) {
+                direction = (direction + 3) % 4;
+            } else {
+                fail("Unexpected command " + command);
+            }
+            commands = messages(send(session, "OK " + x + " " + y + END));
+            assertEquals(1, commands.size());
+            command = commands.get(0);
+        }
+        assertEquals(Response.PICK_UP.toString(), command);
+        assertEquals(0, x);
+        assertEquals(0, y);
+        assertEquals(out(Response.LOGOUT), send(session, "Secret" + END));
+    }
+
+    @Test
+    void shutdownLogsOutRobot() throws IOException {
+        Session session = new Session(output);
+        send(session, "Mnau!" + END);
+        session.onShutdown();
+        assertEquals(out(Response.LOGOUT), flush());
+        assertTrue(session.isFinished());
+    }
+
+    @Test
+    void endOfStream() throws IOException {
+        Session session = new Session(output);
+        send(session, "Mnau!" + END + Constants.RECHARGING + END);
+        session.onEndOfStream();
+        //Connection closed while recharging is a logic error, otherwise an incomplete message
+        assertEquals(out(Response.LOGIC_ERROR), flush());
+
+        session = new Session(output);
+        send(session, "Mna");
+        session.onEndOfStream();
+        assertEquals(out(Response.SYNTAX_ERROR), flush());
+    }
+
+    /**
+     * Feeds chunk into session like a connection driver does
+     *
+     * @return server messages queued while processing it
+     */
+    private String send(Session session, String chunk) throws IOException {
+        session.onInput(ByteBuffer.wrap(chunk.getBytes(StandardCharsets.ISO_8859_1)));
+        return flush();
+    }
+
+    private String flush() throws IOException {
+        output.flush(channel);
+        String messages = sent.toString(StandardCharsets.ISO_8859_1);
+        sent.reset();
+        return messages;
+    }
+
+    private static List<String> messages(String output) {
+        List<String> messages = new ArrayList<>();
+        for (String message : output.split(END)) {
+            if (!message.isEmpty()) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private static String out(Response response) {
+        return response + END;
+    }
+}
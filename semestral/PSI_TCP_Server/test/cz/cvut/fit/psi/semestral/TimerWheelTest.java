@@ -0,0 +1,90 @@
+package cz.cvut.fit.psi.semestral;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Deadlines of timer wheel with 10 ms ticks and 8 slots, time is given explicitly
+ */
+class TimerWheelTest {
+    private final List<String> expired = new ArrayList<>();
+    private final TimerWheel wheel = new TimerWheel(10, 8, 1000);
+
+    @Test
+    void expiresAtDeadlineNotBefore() {
+        wheel.schedule(timeout("a"), 1025);
+        wheel.advance(1024);
+        assertEquals(List.of(), expired);
+        wheel.advance(1030);
+        assertEquals(List.of("a"), expired);
+        wheel.advance(1100);
+        assertEquals(List.of("a"), expired, "expires only once");
+    }
+
+    @Test
+    void postponedDeadline() {
+        TimerWheel.Timeout timeout = timeout("a");
+        wheel.schedule(timeout, 1020);
+        wheel.schedule(timeout, 1055);
+        wheel.advance(1050);
+        assertEquals(List.of(), expired);
+        wheel.advance(1060);
+        assertEquals(List.of("a"), expired);
+    }
+
+    @Test
+    void earlierDeadline() {
+        TimerWheel.Timeout timeout = timeout("a");
+        wheel.schedule(timeout, 1070);
+        wheel.schedule(timeout, 1020);
+        wheel.advance(1020);
+        assertEquals(List.of("a"), expired);
+    }
+
+    @Test
+    void cancelled() {
+        TimerWheel.Timeout timeout = timeout("a");
+        wheel.schedule(timeout, 1020);
+        wheel.schedule(timeout("b"), 1020);
+        wheel.cancel(timeout);
+        wheel.advance(1100);
+        assertEquals(List.of("b"), expired);
+    }
+
+    /**
+     * Deadline more than one turn of the wheel ahead stays in its slot until its round comes
+     */
+    @Test
+    void deadlineBeyondOneTurn() {
+        wheel.schedule(timeout("far"), 1000 + 3 * 80 + 5);
+        wheel.schedule(timeout("near"), 1015);
+        wheel.advance(1000 + 2 * 80 + 10);
+        assertEquals(List.of("near"), expired);
+        wheel.advance(1000 + 3 * 80 + 10);
+        assertEquals(List.of("near", "far"), expired);
+    }
+
+    @Test
+    void deadlineInThePast() {
+        wheel.schedule(timeout("late"), 900);
+        wheel.advance(1010);
+        assertEquals(List.of("late"), expired);
+    }
+
+    @Test
+    void timeJumpExpiresEverything() {
+        for (int i = 0; i < 20; i++) {
+            wheel.schedule(timeout("t" + i), 1010 + i * 10);
+        }
+        wheel.advance(5000);
+        assertEquals(20, expired.size());
+    }
+
+    private TimerWheel.Timeout timeout(String name) {
+        return new TimerWheel.Timeout(() -> expired.add(name));
+    }
+}